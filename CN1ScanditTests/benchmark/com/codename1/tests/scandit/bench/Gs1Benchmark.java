@@ -0,0 +1,146 @@
+package com.codename1.tests.scandit.bench;
+
+import com.codename1.scandit.Gs1Data;
+import com.codename1.scandit.Gs1Parser;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time and the bytes allocated per code to parse GS1 element strings with
+ * {@link Gs1Parser}, compared to splitting the string at each FNC1 and taking substrings
+ * for each AI, which is how apps usually parse them.
+ * 
+ * <p>Run with {@literal ant benchmark-gs1}.  This doesn't need the EDT, so it runs as a
+ * plain Java program, but needs a HotSpot based JVM to measure allocation.</p>
+ */
+public class Gs1Benchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final int ITERATIONS = 200000;
+
+    private final com.sun.management.ThreadMXBean threads = 
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    // Keeps the results alive so the JIT can't drop the work
+    private long sink;
+
+    public static void main(String[] args) {
+        new Gs1Benchmark().runAll();
+    }
+
+    private void runAll() {
+        threads.setThreadAllocatedMemoryEnabled(true);
+        String[] codes = {
+            // GTIN only, e.g. GS1 DataBar
+            "0109501101530003",
+            // GS1-128 with variable length batch and serial number
+            "]C10109501101530003\u001d10AB-123\u001d21SN0000042\u001d17251231",
+            // GS1 DataMatrix with a weight and a price
+            "]d2\u001d0109501101530003172512313103001250\u001d3922499\u001d10LOT7"
+        };
+        byte[][] raw = new byte[codes.length][];
+        for (int i=0; i<codes.length; i++) {
+            raw[i] = codes[i].getBytes();
+        }
+
+        System.out.println(String.format("%-24s %10s %12s %10s",
+                "scenario", "parses", "ns/parse", "B/parse"));
+
+        Gs1Parser parser = new Gs1Parser();
+        run("cursor (String)", codes.length, i->{
+            parser.reset(codes[i]);
+            while (parser.next()) {
+                sink += parser.getAi() + parser.getValueEnd();
+            }
+        });
+        run("cursor (byte[])", codes.length, i->{
+            parser.reset(raw[i]);
+            while (parser.next()) {
+                sink += parser.getAi() + parser.getValueEnd();
+            }
+        });
+        run("cursor + GTIN as long", codes.length, i->{
+            parser.reset(codes[i]);
+            while (parser.next()) {
+                if (parser.getAi() == 1) {
+                    sink += parser.getValueAsLong();
+                }
+            }
+        });
+        run("parse() to Gs1Data", codes.length, i->{
+            Gs1Data d = Gs1Parser.parse(codes[i]);
+            sink += d.size();
+        });
+        run("parse() + all values", codes.length, i->{
+            Gs1Data d = Gs1Parser.parse(codes[i]);
+            for (int j=0; j<d.size(); j++) {
+                sink += d.getValue(j).length();
+            }
+        });
+        run("split + substring", codes.length, i->{
+            List<String[]> d = splitParse(codes[i]);
+            sink += d.size();
+        });
+    }
+
+    private interface Task {
+        void run(int index);
+    }
+
+    private void run(String name, int codes, Task task) {
+        long id = Thread.currentThread().getId();
+        long elapsed = 0;
+        long bytes = 0;
+        for (int run=0; run<WARMUP_RUNS+MEASURED_RUNS; run++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(id);
+            long start = System.nanoTime();
+            for (int i=0; i<ITERATIONS; i++) {
+                task.run(i % codes);
+            }
+            long time = System.nanoTime() - start;
+            long allocated = threads.getThreadAllocatedBytes(id) - bytesBefore;
+            if (run >= WARMUP_RUNS) {
+                elapsed += time;
+                bytes += allocated;
+            }
+        }
+        long parses = (long)ITERATIONS * MEASURED_RUNS;
+        System.out.println(String.format("%-24s %10d %12.1f %10d",
+                name, parses, elapsed / (double)parses, bytes / parses));
+    }
+
+    /**
+     * The usual way of parsing: strip the symbology identifier, split at each FNC1, and
+     * take substrings for the AI and the value of each element.
+     */
+    private static List<String[]> splitParse(String data) {
+        List<String[]> out = new ArrayList<String[]>();
+        if (data.startsWith("]")) {
+            data = data.substring(3);
+        }
+        for (String part : data.split("\u001d")) {
+            while (part.length() >= 2) {
+                String ai = part.substring(0, 2);
+                int fixed = 0;
+                if (ai.equals("01") || ai.equals("02")) {
+                    fixed = 14;
+                } else if (ai.equals("11") || ai.equals("15") || ai.equals("17")) {
+                    fixed = 6;
+                } else if (ai.startsWith("3")) {
+                    ai = part.substring(0, 4);
+                    fixed = ai.startsWith("39") ? 0 : 6;
+                }
+                String rest = part.substring(ai.length());
+                if (fixed > 0 && rest.length() >= fixed) {
+                    out.add(new String[]{ai, rest.substring(0, fixed)});
+                    part = rest.substring(fixed);
+                } else {
+                    out.add(new String[]{ai, rest});
+                    part = "";
+                }
+            }
+        }
+        return out;
+    }
+}
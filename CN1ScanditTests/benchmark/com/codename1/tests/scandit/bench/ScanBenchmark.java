@@ -0,0 +1,206 @@
+package com.codename1.tests.scandit.bench;
+
+import com.codename1.io.Log;
+import com.codename1.scandit.BatchScanResult;
+import com.codename1.scandit.CodeScanner;
+import com.codename1.scandit.ScanReplay;
+import com.codename1.scandit.ScanResult;
+import com.codename1.scandit.ScanSession;
+import com.codename1.scandit.ScannedCode;
+import com.codename1.ui.Display;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the throughput of the scan pipeline (duplicate filter, dispatch and delivery
+ * on the EDT) by replaying synthetic codes with {@link ScanReplay}.  For each scenario it
+ * reports the callbacks per second and the bytes allocated per scan, on the feeding 
+ * thread and on the EDT.
+ * 
+ * <p>Run with {@literal ant benchmark}.  This runs in the JavaSE port, since it needs 
+ * a running EDT, and needs a HotSpot based JVM to measure allocation.</p>
+ */
+public class ScanBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final long TIMEOUT = 60000;
+
+    private final com.sun.management.ThreadMXBean threads = 
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    private long edtThreadId;
+
+    public void init(Object context) {
+    }
+
+    public void start() {
+        Display.getInstance().startThread(()->{
+            try {
+                runAll();
+            } catch (Throwable t) {
+                Log.e(t);
+            }
+            Display.getInstance().exitApplication();
+        }, "ScanBenchmark").start();
+    }
+
+    public void stop() {
+    }
+
+    public void destroy() {
+    }
+
+    private void runAll() throws InterruptedException {
+        threads.setThreadAllocatedMemoryEnabled(true);
+        Display.getInstance().callSeriallyAndWait(()->edtThreadId = Thread.currentThread().getId());
+        CodeScanner scanner = CodeScanner.getInstance();
+
+        System.out.println(String.format("%-22s %8s %12s %12s %9s %12s %11s",
+                "scenario", "codes", "deliveries", "callbacks/s", "codes/s", "feed B/scan", "EDT B/scan"));
+
+        scanner.setDuplicateFilter(0, 0);
+        runSession("session unique", createCodes(20000), 1, 1, false);
+        runSession("session batch x4", createCodes(20000), 4, 1, true);
+
+        scanner.setDuplicateFilter(60000, 500);
+        runSession("session dedup 1%", createCodes(200), 1, 100, false);
+        scanner.setDuplicateFilter(0, 0);
+
+        runSingleScans("single scan round trip", createCodes(2000));
+    }
+
+    private static List<ScannedCode> createCodes(int count) {
+        List<ScannedCode> out = new ArrayList<ScannedCode>(count);
+        for (int i=0; i<count; i++) {
+            String contents = "590123" + (1000000 + i);
+            out.add(new ScannedCode(contents, "EAN13", contents.getBytes()));
+        }
+        return out;
+    }
+
+    /**
+     * Counts deliveries on the EDT and wakes up the benchmark thread when all of the 
+     * expected codes have arrived.
+     */
+    private static class Counter implements BatchScanResult {
+        private final boolean batch;
+        private int codes;
+        private int deliveries;
+
+        Counter(boolean batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void scanBatchCompleted(List<ScannedCode> c) {
+            if (!batch) {
+                for (ScannedCode code : c) {
+                    scanCompleted(code.getContents(), code.getFormatName(), code.getRawBytes());
+                }
+                return;
+            }
+            synchronized (this) {
+                codes += c.size();
+                deliveries++;
+                notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized void scanCompleted(String contents, String formatName, byte[] rawBytes) {
+            codes++;
+            deliveries++;
+            notifyAll();
+        }
+
+        @Override
+        public void scanCanceled() {
+        }
+
+        @Override
+        public void scanError(int errorCode, String message) {
+            Log.p("Scan error "+errorCode+": "+message);
+        }
+
+        synchronized void await(int expected) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT;
+            while (codes < expected) {
+                long wait = end - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new IllegalStateException("Timed out after "+codes+" of "+expected+" codes");
+                }
+                wait(wait);
+            }
+        }
+    }
+
+    private void runSession(String name, List<ScannedCode> codes, int batchSize, int repeat, boolean batch) throws InterruptedException {
+        int expected = codes.size() * (CodeScanner.getInstance().getDuplicateFilterWindow() > 0 ? 1 : repeat);
+        Result total = new Result();
+        for (int run=0; run<WARMUP_RUNS+MEASURED_RUNS; run++) {
+            ScanReplay replay = new ScanReplay(codes);
+            replay.setBatchSize(batchSize);
+            replay.setRepeat(repeat);
+            Counter counter = new Counter(batch);
+            long feedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long edtBefore = threads.getThreadAllocatedBytes(edtThreadId);
+            long start = System.currentTimeMillis();
+            ScanSession session = replay.run(counter);
+            counter.await(expected);
+            long elapsed = System.currentTimeMillis() - start;
+            long feed = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - feedBefore;
+            long edt = threads.getThreadAllocatedBytes(edtThreadId) - edtBefore;
+            session.stop();
+            if (run >= WARMUP_RUNS) {
+                total.add(replay.getTotalCount(), counter.deliveries, elapsed, feed, edt);
+            }
+        }
+        total.print(name);
+    }
+
+    private void runSingleScans(String name, List<ScannedCode> codes) throws InterruptedException {
+        Result total = new Result();
+        for (int run=0; run<WARMUP_RUNS+MEASURED_RUNS; run++) {
+            ScanReplay replay = new ScanReplay(codes);
+            Counter counter = new Counter(false);
+            long feedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long edtBefore = threads.getThreadAllocatedBytes(edtThreadId);
+            long start = System.currentTimeMillis();
+            for (int i=0; i<codes.size(); i++) {
+                replay.scanNext(counter);
+                // A new scan can only start after the last one was delivered
+                counter.await(i + 1);
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            long feed = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - feedBefore;
+            long edt = threads.getThreadAllocatedBytes(edtThreadId) - edtBefore;
+            if (run >= WARMUP_RUNS) {
+                total.add(codes.size(), counter.deliveries, elapsed, feed, edt);
+            }
+        }
+        total.print(name);
+    }
+
+    private static class Result {
+        long codes;
+        long deliveries;
+        long elapsed;
+        long feedBytes;
+        long edtBytes;
+
+        void add(long codes, long deliveries, long elapsed, long feedBytes, long edtBytes) {
+            this.codes += codes;
+            this.deliveries += deliveries;
+            this.elapsed += elapsed;
+            this.feedBytes += feedBytes;
+            this.edtBytes += edtBytes;
+        }
+
+        void print(String name) {
+            double seconds = Math.max(1, elapsed) / 1000.0;
+            System.out.println(String.format("%-22s %8d %12d %12.0f %9.0f %12d %11d",
+                    name, codes, deliveries, deliveries / seconds, codes / seconds,
+                    feedBytes / codes, edtBytes / codes));
+        }
+    }
+}
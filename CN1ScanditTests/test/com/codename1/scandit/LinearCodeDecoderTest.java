@@ -0,0 +1,220 @@
+package com.codename1.scandit;
+
+import com.codename1.io.Log;
+import com.codename1.testing.AbstractTest;
+import java.util.List;
+
+/**
+ * Tests the built in software decoder of the simulator with synthetic EAN-13, Code 128
+ * and Code 39 images.  The decoder is part of the JavaSE port, so it is loaded by name,
+ * and the test is skipped where it isn't available.
+ */
+public class LinearCodeDecoderTest extends AbstractTest {
+    private static final int MODULE = 3;
+    private static final int HEIGHT = 24;
+    private static final int QUIET = 12;
+
+    private static final String[] EAN_L = {
+        "0001101", "0011001", "0010011", "0111101", "0100011",
+        "0110001", "0101111", "0111011", "0110111", "0001011"
+    };
+    private static final String[] EAN_PARITY = {
+        "LLLLLL", "LLGLGG", "LLGGLG", "LLGGGL", "LGLLGG",
+        "LGGLLG", "LGGGLL", "LGLGLG", "LGLGGL", "LGGLGL"
+    };
+
+    private static final String[] CODE128 = {
+        "212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312", "132212", "221213",
+        "221312", "231212", "112232", "122132", "122231", "113222", "123122", "123221", "223211", "221132",
+        "221231", "213212", "223112", "312131", "311222", "321122", "321221", "312212", "322112", "322211",
+        "212123", "212321", "232121", "111323", "131123", "131321", "112313", "132113", "132311", "211313",
+        "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121", "313121", "211331",
+        "231131", "213113", "213311", "213131", "311123", "311321", "331121", "312113", "312311", "332111",
+        "314111", "221411", "431111", "111224", "111422", "121124", "121421", "141122", "141221", "112214",
+        "112412", "122114", "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+        "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112", "421211", "212141",
+        "214121", "412121", "111143", "111341", "131141", "114113", "114311", "411113", "411311", "113141",
+        "114131", "311141", "411131", "211412", "211214", "211232"
+    };
+    private static final String CODE128_STOP = "2331112";
+
+    private static final String CODE39_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. $/+%*";
+    private static final int[] CODE39 = {
+        0x034, 0x121, 0x061, 0x160, 0x031, 0x130, 0x070, 0x025, 0x124, 0x064,
+        0x109, 0x049, 0x148, 0x019, 0x118, 0x058, 0x00D, 0x10C, 0x04C, 0x01C,
+        0x103, 0x043, 0x142, 0x013, 0x112, 0x052, 0x007, 0x106, 0x046, 0x016,
+        0x181, 0x0C1, 0x1C0, 0x091, 0x190, 0x0D0, 0x085, 0x184, 0x0C4, 0x0A8,
+        0x0A2, 0x08A, 0x02A, 0x094
+    };
+
+    private static final int ALL = CodeScanner.SYMBOLOGY_EAN13 | CodeScanner.SYMBOLOGY_EAN8
+            | CodeScanner.SYMBOLOGY_CODE128 | CodeScanner.SYMBOLOGY_CODE39;
+
+    @Override
+    public boolean runTest() throws Exception {
+        CodeDecoder decoder;
+        try {
+            decoder = (CodeDecoder)Class.forName("com.codename1.scandit.LinearCodeDecoder").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException ex) {
+            Log.p("The software decoder is only available in the simulator; skipping");
+            return true;
+        }
+        testEan13(decoder);
+        testCode128(decoder);
+        testCode39(decoder);
+        return true;
+    }
+
+    private void testEan13(CodeDecoder decoder) {
+        Bars bars = ean13("4006381333931");
+        assertCode(decoder.decode(bars.render(false), bars.width(), HEIGHT, ALL, 1), "4006381333931", "EAN13");
+        assertCode(decoder.decode(bars.render(true), bars.width(), HEIGHT, ALL, 1), "4006381333931", "EAN13",
+                "EAN-13 is read upside down");
+
+        bars = ean13("4006381333932");
+        assertNull(decoder.decode(bars.render(false), bars.width(), HEIGHT, ALL, 1), "A bad check digit is rejected");
+        bars = ean13("4006381333931");
+        assertNull(decoder.decode(bars.render(false), bars.width(), HEIGHT, CodeScanner.SYMBOLOGY_CODE128, 1),
+                "Symbologies outside the mask are not reported");
+    }
+
+    private void testCode128(CodeDecoder decoder) {
+        Bars bars = code128(104, new int[]{'C' - 32, 'N' - 32, '1' - 32, '-' - 32, 's' - 32, 'k' - 32, 'u' - 32});
+        assertCode(decoder.decode(bars.render(false), bars.width(), HEIGHT, ALL, 1), "CN1-sku", "CODE128");
+        assertCode(decoder.decode(bars.render(true), bars.width(), HEIGHT, ALL, 1), "CN1-sku", "CODE128",
+                "Code 128 is read upside down");
+
+        // GS1-128: start C, FNC1, then digit pairs
+        bars = code128(105, new int[]{102, 1, 9, 50, 11, 1, 53, 0, 3});
+        assertCode(decoder.decode(bars.render(false), bars.width(), HEIGHT, ALL, 1), "0109501101530003", "CODE128");
+    }
+
+    private void testCode39(CodeDecoder decoder) {
+        Bars bars = code39("CN1-SCAN");
+        assertCode(decoder.decode(bars.render(false), bars.width(), HEIGHT, ALL, 1), "CN1-SCAN", "CODE39");
+        assertCode(decoder.decode(bars.render(true), bars.width(), HEIGHT, ALL, 1), "CN1-SCAN", "CODE39",
+                "Code 39 is read upside down");
+        assertNull(decoder.decode(bars.render(false), bars.width(), HEIGHT, CodeScanner.SYMBOLOGY_EAN13, 1),
+                "Symbologies outside the mask are not reported");
+    }
+
+    private void assertCode(List<ScannedCode> codes, String contents, String format) {
+        assertCode(codes, contents, format, contents + " is decoded");
+    }
+
+    private void assertCode(List<ScannedCode> codes, String contents, String format, String message) {
+        assertNotNull(codes, message);
+        assertEqual(1, codes.size(), message);
+        assertEqual(contents, codes.get(0).getContents(), message);
+        assertEqual(format, codes.get(0).getFormatName(), message);
+    }
+
+    private static Bars ean13(String digits) {
+        Bars bars = new Bars();
+        bars.modules("101");
+        String parity = EAN_PARITY[digits.charAt(0) - '0'];
+        for (int i=1; i<=6; i++) {
+            String l = EAN_L[digits.charAt(i) - '0'];
+            bars.modules(parity.charAt(i - 1) == 'L' ? l : reverse(invert(l)));
+        }
+        bars.modules("01010");
+        for (int i=7; i<=12; i++) {
+            bars.modules(invert(EAN_L[digits.charAt(i) - '0']));
+        }
+        bars.modules("101");
+        return bars;
+    }
+
+    private static Bars code128(int start, int[] values) {
+        Bars bars = new Bars();
+        bars.widths(CODE128[start]);
+        int check = start;
+        for (int i=0; i<values.length; i++) {
+            bars.widths(CODE128[values[i]]);
+            check += (i + 1) * values[i];
+        }
+        bars.widths(CODE128[check % 103]);
+        bars.widths(CODE128_STOP);
+        return bars;
+    }
+
+    private static Bars code39(String text) {
+        Bars bars = new Bars();
+        String s = "*" + text + "*";
+        for (int i=0; i<s.length(); i++) {
+            if (i > 0) {
+                bars.modules("0");
+            }
+            int encoding = CODE39[CODE39_ALPHABET.indexOf(s.charAt(i))];
+            StringBuilder widths = new StringBuilder();
+            for (int b=8; b>=0; b--) {
+                widths.append((encoding & (1 << b)) != 0 ? '3' : '1');
+            }
+            bars.widths(widths.toString());
+        }
+        return bars;
+    }
+
+    private static String invert(String modules) {
+        StringBuilder sb = new StringBuilder(modules.length());
+        for (int i=0; i<modules.length(); i++) {
+            sb.append(modules.charAt(i) == '1' ? '0' : '1');
+        }
+        return sb.toString();
+    }
+
+    private static String reverse(String modules) {
+        StringBuilder sb = new StringBuilder(modules.length());
+        for (int i=modules.length()-1; i>=0; i--) {
+            sb.append(modules.charAt(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A row of modules, dark or light, that is rendered as an image with quiet zones.
+     */
+    private static class Bars {
+        private final StringBuilder modules = new StringBuilder();
+
+        /**
+         * Appends modules, where 1 is dark and 0 is light.
+         */
+        void modules(String m) {
+            modules.append(m);
+        }
+
+        /**
+         * Appends alternating elements of the given widths, starting with a dark one.
+         */
+        void widths(String w) {
+            for (int i=0; i<w.length(); i++) {
+                char c = (i & 1) == 0 ? '1' : '0';
+                for (int n=w.charAt(i)-'0'; n>0; n--) {
+                    modules.append(c);
+                }
+            }
+        }
+
+        int width() {
+            return (modules.length() + 2 * QUIET) * MODULE;
+        }
+
+        int[] render(boolean reversed) {
+            int width = width();
+            int[] argb = new int[width * HEIGHT];
+            int len = modules.length();
+            for (int x=0; x<width; x++) {
+                int m = x / MODULE - QUIET;
+                if (reversed) {
+                    m = len - 1 - m;
+                }
+                int color = m >= 0 && m < len && modules.charAt(m) == '1' ? 0xff000000 : 0xffffffff;
+                for (int y=0; y<HEIGHT; y++) {
+                    argb[y * width + x] = color;
+                }
+            }
+            return argb;
+        }
+    }
+}
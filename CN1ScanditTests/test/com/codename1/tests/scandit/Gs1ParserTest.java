@@ -0,0 +1,126 @@
+package com.codename1.tests.scandit;
+
+import com.codename1.scandit.Gs1Data;
+import com.codename1.scandit.Gs1Parser;
+import com.codename1.testing.AbstractTest;
+
+/**
+ * Tests that {@link Gs1Parser} splits element strings with fixed and variable length
+ * values, 4 digit AIs, symbology identifiers and the human readable form, and that it
+ * rejects malformed data.
+ */
+public class Gs1ParserTest extends AbstractTest {
+    private static final String GS = String.valueOf(Gs1Parser.GS);
+
+    private final Gs1Parser parser = new Gs1Parser();
+
+    @Override
+    public boolean runTest() throws Exception {
+        testFixedThenVariable();
+        testFourDigitAis();
+        testSymbologyIdentifier();
+        testParenthesized();
+        testBytes();
+        testMalformed();
+        return true;
+    }
+
+    private void testFixedThenVariable() {
+        parser.reset("0109501101530003" + "17251231" + "10AB12" + GS + "21XYZ");
+        assertElement(1, 2, "09501101530003");
+        assertEqual(9501101530003L, parser.getValueAsLong());
+        assertElement(17, 2, "251231");
+        assertElement(10, 2, "AB12");
+        assertTrue(parser.valueEquals("AB12"));
+        assertFalse(parser.valueEquals("AB1"));
+        assertElement(21, 2, "XYZ");
+        assertEnd();
+    }
+
+    private void testFourDigitAis() {
+        parser.reset("3103001250" + "7003" + "2512311200" + GS + "392212345" + GS + "8005000365");
+        assertElement(3103, 4, "001250");
+        assertEqual(1.25, parser.getValueAsDecimal(), 0.0001);
+        assertEqual("3103", parser.getAiString());
+        assertElement(7003, 4, "2512311200");
+        assertEqual(2512311200.0, parser.getValueAsDecimal(), 0.0001);
+        assertElement(3922, 4, "12345");
+        assertEqual(123.45, parser.getValueAsDecimal(), 0.0001);
+        assertElement(8005, 4, "000365");
+        assertEqual(365.0, parser.getValueAsDecimal(), 0.0001);
+        assertEnd();
+    }
+
+    private void testSymbologyIdentifier() {
+        parser.reset("]d2" + GS + "0109501101530003" + GS + "10LOT7");
+        assertElement(1, 2, "09501101530003");
+        assertElement(10, 2, "LOT7");
+        assertEnd();
+
+        parser.reset("]C1" + "00095011015300000017");
+        assertElement(0, 2, "095011015300000017");
+        assertEqual("00", parser.getAiString());
+        assertEnd();
+    }
+
+    private void testParenthesized() {
+        Gs1Data data = Gs1Parser.parse("(01)09501101530003(3103)001250(10)AB12");
+        assertNotNull(data);
+        assertEqual(3, data.size());
+        assertEqual("09501101530003", data.get("01"));
+        assertEqual("001250", data.get("3103"));
+        assertEqual("AB12", data.get("10"));
+        assertEqual(3103, data.getAi(1));
+    }
+
+    private void testBytes() throws Exception {
+        byte[] raw = ("]d2" + GS + "0109501101530003" + "10AB12").getBytes("UTF-8");
+        Gs1Data data = Gs1Parser.parse(raw);
+        assertNotNull(data);
+        assertEqual(2, data.size());
+        assertEqual("09501101530003", data.get("01"));
+        assertEqual("AB12", data.get("10"));
+    }
+
+    private void testMalformed() {
+        assertMalformed("AB12", "Data that doesn't start with an AI");
+        assertMalformed("0512345", "An AI that isn't defined");
+        assertMalformed("01095011", "A fixed length value that is cut short");
+        assertMalformed("0109501101530003XX", "Data after a fixed length value that isn't an AI");
+        assertMalformed("310", "A 4 digit AI that is cut short");
+        assertMalformed("(1)23", "A parenthesized AI with one digit");
+        assertMalformed("(01", "A parenthesized AI that isn't closed");
+
+        assertNull(Gs1Parser.parse(""), "Empty data has no elements");
+        parser.reset("");
+        assertFalse(parser.next());
+        assertFalse(parser.hasError(), "Empty data isn't an error");
+
+        parser.reset("0109501101530003");
+        assertElement(1, 2, "09501101530003");
+        parser.reset("10AB");
+        assertElement(10, 2, "AB");
+        assertEnd();
+    }
+
+    private void assertMalformed(String data, String message) {
+        parser.reset(data);
+        while (parser.next()) {
+        }
+        assertTrue(parser.hasError(), message);
+        assertEqual(-1, parser.getAi(), message);
+        assertNull(Gs1Parser.parse(data), message);
+    }
+
+    private void assertElement(int ai, int aiLength, String value) {
+        assertTrue(parser.next(), "Expected AI " + ai);
+        assertEqual(ai, parser.getAi());
+        assertEqual(aiLength, parser.getAiLength());
+        assertEqual(value, parser.getValue());
+    }
+
+    private void assertEnd() {
+        assertFalse(parser.next(), "Expected the end of the data");
+        assertFalse(parser.hasError());
+    }
+}
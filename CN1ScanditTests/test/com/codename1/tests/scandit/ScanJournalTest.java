@@ -0,0 +1,179 @@
+package com.codename1.tests.scandit;
+
+import com.codename1.io.FileSystemStorage;
+import com.codename1.io.Util;
+import com.codename1.scandit.ScanJournal;
+import com.codename1.scandit.ScannedCode;
+import com.codename1.testing.AbstractTest;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Tests that {@link ScanJournal} keeps unacknowledged codes across restarts, including
+ * after a torn write and after a compaction that was interrupted.
+ */
+public class ScanJournalTest extends AbstractTest {
+    private static final String NAME = "ScanJournalTest.journal";
+
+    private String path;
+
+    @Override
+    public void prepare() {
+        path = FileSystemStorage.getInstance().getAppHomePath() + NAME;
+        deleteFiles();
+    }
+
+    @Override
+    public void cleanup() {
+        deleteFiles();
+    }
+
+    private void deleteFiles() {
+        FileSystemStorage fs = FileSystemStorage.getInstance();
+        if (fs.exists(path)) {
+            fs.delete(path);
+        }
+        if (fs.exists(path + ".tmp")) {
+            fs.delete(path + ".tmp");
+        }
+    }
+
+    @Override
+    public boolean runTest() throws Exception {
+        testAcknowledgeThenReopen();
+        deleteFiles();
+        testTornTail();
+        deleteFiles();
+        testCompaction();
+        deleteFiles();
+        testRecoverInterruptedCompaction();
+        deleteFiles();
+        testStaleTempFile();
+        return true;
+    }
+
+    private static ScannedCode code(int i) {
+        return new ScannedCode("CODE-" + i, "CODE128", null);
+    }
+
+    private void testAcknowledgeThenReopen() throws Exception {
+        ScanJournal journal = new ScanJournal(path);
+        for (int i=1; i<=3; i++) {
+            assertEqual((long)i, journal.append(code(i)));
+        }
+        journal.acknowledge(2);
+        journal.close();
+
+        journal = new ScanJournal(path);
+        List<ScanJournal.Entry> pending = journal.drain(10);
+        assertEqual(1, pending.size(), "Only the unacknowledged code is kept");
+        assertEqual(3L, pending.get(0).getSequence());
+        assertEqual("CODE-3", pending.get(0).getCode().getContents());
+        assertEqual(4L, journal.append(code(4)), "Sequence numbers are never reused");
+        journal.acknowledge(4);
+        journal.close();
+
+        journal = new ScanJournal(path);
+        assertEqual(0, journal.getPendingCount());
+        assertEqual(5L, journal.append(code(5)), "Sequence numbers survive acknowledging everything");
+        journal.close();
+    }
+
+    private void testTornTail() throws Exception {
+        ScanJournal journal = new ScanJournal(path);
+        journal.append(code(1));
+        journal.append(code(2));
+        journal.close();
+
+        // A record that was cut off while it was written
+        FileSystemStorage fs = FileSystemStorage.getInstance();
+        int length = (int)fs.getLength(path);
+        OutputStream out = fs.openOutputStream(path, length);
+        try {
+            out.write(new byte[]{0, 0, 0, 40, 1, 0, 0});
+        } finally {
+            Util.cleanup(out);
+        }
+
+        journal = new ScanJournal(path);
+        assertEqual(2, journal.getPendingCount(), "Complete records are kept");
+        journal.append(code(3));
+        journal.close();
+
+        journal = new ScanJournal(path);
+        List<ScanJournal.Entry> pending = journal.drain(10);
+        assertEqual(3, pending.size(), "Records after the torn one are readable");
+        assertEqual("CODE-3", pending.get(2).getCode().getContents());
+        journal.close();
+    }
+
+    private void testCompaction() throws Exception {
+        ScanJournal journal = new ScanJournal(path);
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<200; i++) {
+            sb.append('x');
+        }
+        String filler = sb.toString();
+        long last = 0;
+        for (int i=0; i<1000; i++) {
+            last = journal.append(new ScannedCode(filler + i, "CODE128", null));
+        }
+        journal.flush();
+        FileSystemStorage fs = FileSystemStorage.getInstance();
+        long before = fs.getLength(path);
+        journal.acknowledge(last - 1);
+        journal.flush();
+        long after = fs.getLength(path);
+        assertTrue(after < before / 10, "Acknowledged codes are compacted away ("+before+" -> "+after+")");
+        assertFalse(fs.exists(path + ".tmp"), "The temporary file replaced the journal");
+        journal.close();
+
+        journal = new ScanJournal(path);
+        List<ScanJournal.Entry> pending = journal.drain(10);
+        assertEqual(1, pending.size());
+        assertEqual(last, pending.get(0).getSequence());
+        assertEqual(last + 1, journal.append(code(0)));
+        journal.close();
+    }
+
+    private void testRecoverInterruptedCompaction() throws Exception {
+        ScanJournal journal = new ScanJournal(path);
+        journal.append(code(1));
+        journal.append(code(2));
+        journal.acknowledge(1);
+        journal.close();
+
+        // Killed after the old journal was deleted, before the new one was renamed
+        FileSystemStorage fs = FileSystemStorage.getInstance();
+        fs.rename(path, NAME + ".tmp");
+        assertFalse(fs.exists(path));
+
+        journal = new ScanJournal(path);
+        List<ScanJournal.Entry> pending = journal.drain(10);
+        assertEqual(1, pending.size(), "The journal is recovered from the temporary file");
+        assertEqual(2L, pending.get(0).getSequence());
+        assertTrue(fs.exists(path));
+        assertFalse(fs.exists(path + ".tmp"));
+        journal.close();
+    }
+
+    private void testStaleTempFile() throws Exception {
+        ScanJournal journal = new ScanJournal(path);
+        journal.append(code(1));
+        journal.close();
+
+        // Killed while the temporary file was written
+        FileSystemStorage fs = FileSystemStorage.getInstance();
+        OutputStream out = fs.openOutputStream(path + ".tmp");
+        try {
+            out.write(new byte[]{0x43, 0x4e});
+        } finally {
+            Util.cleanup(out);
+        }
+
+        journal = new ScanJournal(path);
+        assertEqual(1, journal.getPendingCount(), "The journal is read, not the temporary file");
+        assertFalse(fs.exists(path + ".tmp"), "The stale temporary file is deleted");
+        journal.close();
+    }
+}
@@ -1,44 +1,485 @@
 package com.codename1.scandit;
-import android.content.Intent;
+import android.app.Activity;
+import android.content.pm.PackageManager;
+import android.graphics.RectF;
+import android.os.Bundle;
+import android.view.KeyEvent;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.FrameLayout;
+import com.codename1.impl.android.AndroidImplementation;
 import com.codename1.impl.android.AndroidNativeUtil;
-import com.codename1.impl.android.IntentResultListener;
-import com.scandit.barcodepicker.BarcodePickerActivity;
+import com.codename1.impl.android.LifecycleListener;
+import com.scandit.barcodepicker.BarcodePicker;
+import com.scandit.barcodepicker.OnScanListener;
+import com.scandit.barcodepicker.ScanSettings;
 import com.scandit.barcodepicker.ScanditLicense;
+import com.scandit.recognition.Barcode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class NativeCodeScannerImpl {
-    private static final int REQUEST_BARCODE_PICKER_ACTIVITY = 55;
-    
-    public void scan(int[] symbologiesToEnable) {
-        ScanditLicense.setAppKey(CodeScanner.getLicenseKey());
-	Intent launchIntent = new Intent(AndroidNativeUtil.getActivity(), BarcodePickerActivity.class);
-        launchIntent.putExtra("enabledSymbologies", symbologiesToEnable);
-        //launchIntent.putExtra("guiStyle", ScanOverlay.GUI_STYLE_LASER);
-        launchIntent.putExtra("restrictScanningArea", true);
-        launchIntent.putExtra("scanningAreaHeight", 0.1f);
-        AndroidNativeUtil.startActivityForResult(launchIntent, REQUEST_BARCODE_PICKER_ACTIVITY, new IntentResultListener() {
+    private static boolean licenseSet;
+
+    // The picker is created once and reused for every scan so that the
+    // recognition engine is only initialized once.
+    private BarcodePicker picker;
+    private FrameLayout container;
+    private volatile boolean inProgress;
+    private volatile boolean continuous;
+    private volatile int maxCodesPerFrame = 1;
+    private volatile int payloadFormats = CodeScanner.PAYLOAD_TEXT;
+    // Token of the current single scan, or 0 while a session is running
+    private volatile int requestId;
+    private long appliedSettings = -1;
+    private LifecycleListener lifecycleListener;
+
+    // A picker for each ScannerView, since a view can only have one parent.
+    // Only used on the UI thread.
+    private final Map<Integer, ViewPicker> viewPickers = new HashMap<Integer, ViewPicker>();
+
+    private static class ViewPicker {
+        BarcodePicker picker;
+        volatile boolean scanning;
+        volatile int maxCodesPerFrame = 1;
+        volatile int payloadFormats = CodeScanner.PAYLOAD_TEXT;
+        long appliedSettings = -1;
+    }
+
+    private static void setLicense() {
+        if (!licenseSet) {
+            ScanditLicense.setAppKey(CodeScanner.getLicenseKey());
+            licenseSet = true;
+        }
+    }
+
+    public void scan(int requestId, int symbologyMask) {
+        show(requestId, symbologyMask, false);
+    }
+
+    public void startSession(int symbologyMask) {
+        show(ScanDispatcher.SESSION_TOKEN, symbologyMask, true);
+    }
+
+    public void stopSession() {
+        inProgress = false;
+        AndroidNativeUtil.getActivity().runOnUiThread(new Runnable() {
+            public void run() {
+                hide();
+            }
+        });
+    }
+
+    public void warmUp() {
+        final Activity activity = AndroidNativeUtil.getActivity();
+        if (activity == null) {
+            // Called before there is an activity, e.g. from init().  The picker is
+            // created by the first scan instead.
+            return;
+        }
+        activity.runOnUiThread(new Runnable() {
+            public void run() {
+                createPicker(activity);
+            }
+        });
+    }
+
+    public void releaseScanner() {
+        inProgress = false;
+        Activity activity = AndroidNativeUtil.getActivity();
+        if (activity == null) {
+            // There is no UI thread to hop to, and nothing is on screen
+            releasePicker();
+            return;
+        }
+        activity.runOnUiThread(new Runnable() {
+            public void run() {
+                releasePicker();
+            }
+        });
+    }
+
+    /**
+     * Closes the modal picker and releases it.  Stopping the picker releases the 
+     * camera, and detaching its listener and views drops the last references to it, 
+     * so that the recognition engine is freed with it.
+     */
+    private void releasePicker() {
+        if (picker == null) {
+            return;
+        }
+        hide();
+        picker.setOnScanListener(null);
+        container.removeAllViews();
+        picker = null;
+        container = null;
+        appliedSettings = -1;
+    }
+
+    private static List<ScannedCode> readCodes(com.scandit.barcodepicker.ScanSession session, int max, int payloadFormats) {
+        List<Barcode> recognized = session.getNewlyRecognizedCodes();
+        int count = Math.min(recognized.size(), max);
+        if (count <= 0) {
+            return null;
+        }
+        List<ScannedCode> codes = new ArrayList<ScannedCode>(count);
+        for (int i=0; i<count; i++) {
+            Barcode code = recognized.get(i);
+            // The raw data array is handed to the app as is, without copying.
+            String data = (payloadFormats & CodeScanner.PAYLOAD_TEXT) != 0 ? code.getData() : null;
+            byte[] rawData = (payloadFormats & CodeScanner.PAYLOAD_RAW_BYTES) != 0 ? code.getRawData() : null;
+            codes.add(new ScannedCode(data, code.getSymbologyName(), rawData));
+        }
+        return codes;
+    }
+
+    /**
+     * Builds a key that identifies a settings configuration, so that settings are only
+     * applied to a picker when they change.
+     */
+    private static long settingsKey(int symbologyMask, int maxCodes, boolean restricted, int settingsVersion) {
+        return ((long)settingsVersion << 48) | ((long)(maxCodes & 0x7fff) << 33) | (restricted ? 1L << 32 : 0) | (symbologyMask & 0xffffffffL);
+    }
+
+    /**
+     * Creates the settings for a scan.
+     * @param area The scanning area, or null for the default.
+     * @param profile The camera and recognition profile.
+     * @param singleScan True for a single scan, which is restricted to a band around the
+     * center by default.
+     */
+    private static ScanSettings createSettings(int symbologyMask, int maxCodes, ScanArea area, ScanProfile profile, boolean singleScan) {
+        ScanSettings settings = ScanSettings.create();
+        CodeScanner scanner = CodeScanner.getInstance();
+        for (int m = symbologyMask; m != 0; m &= m - 1) {
+            int symbology = m & -m;
+            settings.setSymbologyEnabled(symbology, true);
+            SymbologySettings symbologySettings = scanner.getSymbologySettings(symbology);
+            if (symbologySettings != null) {
+                applySymbologySettings(settings.getSymbologySettings(symbology), symbologySettings);
+            }
+        }
+        settings.setMaxNumberOfCodesPerFrame(maxCodes);
+        if (profile.getResolution() == ScanProfile.RESOLUTION_STANDARD) {
+            settings.setResolutionPreference(ScanSettings.RESOLUTION_STANDARD);
+        } else if (profile.getResolution() == ScanProfile.RESOLUTION_HIGH) {
+            settings.setResolutionPreference(ScanSettings.RESOLUTION_FULL_HD);
+        }
+        if (profile.getMaxFrameRate() > 0) {
+            settings.setMaxFrameRate(profile.getMaxFrameRate());
+        }
+        if (profile.getCodeDuplicateFilter() != ScanProfile.DUPLICATE_FILTER_DEFAULT) {
+            settings.setCodeDuplicateFilter(profile.getCodeDuplicateFilter());
+        }
+        if (area != null) {
+            settings.setRestrictedAreaScanningEnabled(!area.isFull());
+            settings.setScanningHotSpot(area.getHotSpotX(), area.getHotSpotY());
+            settings.setActiveScanningArea(ScanSettings.ORIENTATION_PORTRAIT, new RectF(
+                    area.getX(), area.getY(), area.getX() + area.getWidth(), area.getY() + area.getHeight()));
+            settings.setActiveScanningArea(ScanSettings.ORIENTATION_LANDSCAPE, new RectF(
+                    area.getLandscapeX(), area.getLandscapeY(), 
+                    area.getLandscapeX() + area.getLandscapeWidth(), area.getLandscapeY() + area.getLandscapeHeight()));
+        } else if (singleScan) {
+            settings.setRestrictedAreaScanningEnabled(true);
+            settings.setScanningHotSpotHeight(0.1f);
+        }
+        return settings;
+    }
+
+    private static void applySymbologySettings(com.scandit.recognition.SymbologySettings target, SymbologySettings settings) {
+        short[] counts = settings.copyActiveSymbolCounts();
+        if (counts != null) {
+            target.setActiveSymbolCounts(counts);
+        }
+        if (settings.getChecksums() != -1) {
+            target.setChecksums(toNativeChecksums(settings.getChecksums()));
+        }
+        if (settings.isColorInvertedSet()) {
+            target.setColorInvertedEnabled(settings.isColorInvertedEnabled());
+        }
+        int len = settings.getExtensionCount();
+        for (int i=0; i<len; i++) {
+            target.setExtensionEnabled(settings.getExtensionName(i), settings.isExtensionEnabled(i));
+        }
+    }
+
+    private static final int[][] CHECKSUMS = {
+        {SymbologySettings.CHECKSUM_MOD_10, com.scandit.recognition.SymbologySettings.CHECKSUM_MOD_10},
+        {SymbologySettings.CHECKSUM_MOD_11, com.scandit.recognition.SymbologySettings.CHECKSUM_MOD_11},
+        {SymbologySettings.CHECKSUM_MOD_16, com.scandit.recognition.SymbologySettings.CHECKSUM_MOD_16},
+        {SymbologySettings.CHECKSUM_MOD_43, com.scandit.recognition.SymbologySettings.CHECKSUM_MOD_43},
+        {SymbologySettings.CHECKSUM_MOD_47, com.scandit.recognition.SymbologySettings.CHECKSUM_MOD_47},
+        {SymbologySettings.CHECKSUM_MOD_103, com.scandit.recognition.SymbologySettings.CHECKSUM_MOD_103},
+        {SymbologySettings.CHECKSUM_MOD_1010, com.scandit.recognition.SymbologySettings.CHECKSUM_MOD_1010},
+        {SymbologySettings.CHECKSUM_MOD_1110, com.scandit.recognition.SymbologySettings.CHECKSUM_MOD_1110}
+    };
+
+    private static int toNativeChecksums(int checksums) {
+        int out = 0;
+        for (int[] c : CHECKSUMS) {
+            if ((checksums & c[0]) != 0) {
+                out |= c[1];
+            }
+        }
+        return out;
+    }
+
+    public View createScannerView(final int viewId) {
+        final Activity activity = AndroidNativeUtil.getActivity();
+        final ViewPicker vp = new ViewPicker();
+        AndroidImplementation.runOnUiThreadAndBlock(new Runnable() {
+            public void run() {
+                setLicense();
+                addLifecycleListener();
+                vp.picker = new BarcodePicker(activity, ScanSettings.create());
+                vp.picker.setOnScanListener(new OnScanListener() {
+
+                    @Override
+                    public void didScan(com.scandit.barcodepicker.ScanSession session) {
+                        if (!vp.scanning) {
+                            return;
+                        }
+                        CodeScanner.markPhase(ScanMetrics.PHASE_RECOGNIZED);
+                        List<ScannedCode> codes = CodeScanner.filterCodes(readCodes(session, vp.maxCodesPerFrame, vp.payloadFormats));
+                        if (codes != null) {
+                            CodeScanner.scanBatchCompletedCallback(ScanDispatcher.SESSION_TOKEN, codes);
+                        }
+                    }
+                });
+                viewPickers.put(viewId, vp);
+            }
+        });
+        return vp.picker;
+    }
+
+    public void startViewScanning(final int viewId, final int symbologyMask) {
+        final int maxCodes = CodeScanner.getInstance().getMaxCodesPerFrame();
+        final int payload = CodeScanner.getInstance().getPayloadFormats();
+        final ScanArea area = CodeScanner.getInstance().getActiveScanArea();
+        final ScanProfile profile = CodeScanner.getInstance().getProfile();
+        final int version = CodeScanner.getInstance().getSettingsVersion();
+        AndroidNativeUtil.getActivity().runOnUiThread(new Runnable() {
+            public void run() {
+                ViewPicker vp = viewPickers.get(viewId);
+                if (vp == null) {
+                    return;
+                }
+                long key = settingsKey(symbologyMask, maxCodes, false, version);
+                if (key != vp.appliedSettings) {
+                    vp.picker.applyScanSettings(createSettings(symbologyMask, maxCodes, area, profile, false));
+                    vp.appliedSettings = key;
+                }
+                vp.maxCodesPerFrame = maxCodes;
+                vp.payloadFormats = payload;
+                vp.scanning = true;
+                vp.picker.startScanning();
+                CodeScanner.markPhase(ScanMetrics.PHASE_PRESENTED);
+            }
+        });
+    }
+
+    public void stopViewScanning(final int viewId) {
+        AndroidNativeUtil.getActivity().runOnUiThread(new Runnable() {
+            public void run() {
+                ViewPicker vp = viewPickers.get(viewId);
+                if (vp != null) {
+                    vp.scanning = false;
+                    vp.picker.stopScanning();
+                }
+            }
+        });
+    }
+
+    public void releaseScannerView(final int viewId) {
+        AndroidNativeUtil.getActivity().runOnUiThread(new Runnable() {
+            public void run() {
+                ViewPicker vp = viewPickers.remove(viewId);
+                if (vp == null) {
+                    return;
+                }
+                vp.scanning = false;
+                vp.picker.stopScanning();
+                ViewGroup parent = (ViewGroup)vp.picker.getParent();
+                if (parent != null) {
+                    parent.removeView(vp.picker);
+                }
+            }
+        });
+    }
+
+    private void createPicker(final Activity activity) {
+        if (picker != null) {
+            return;
+        }
+        setLicense();
+        addLifecycleListener();
+        picker = new BarcodePicker(activity, ScanSettings.create());
+        picker.setOnScanListener(new OnScanListener() {
 
             @Override
-            public void onActivityResult(int requestCode, int resultCode, Intent data) {
-                if (requestCode != REQUEST_BARCODE_PICKER_ACTIVITY) {
-			return;
-		}
-		
-		if (data.getBooleanExtra("barcodeRecognized", false)) {
-                    CodeScanner.scanCompletedCallback(data.getStringExtra("barcodeData"), data.getStringExtra("barcodeSymbologyName"), null);
-                    
-		} else {
-                    CodeScanner.scanCanceledCallback();
+            public void didScan(com.scandit.barcodepicker.ScanSession session) {
+                if (!inProgress) {
+                    return;
                 }
+                CodeScanner.markPhase(ScanMetrics.PHASE_RECOGNIZED);
+                // Filter before the scan is finished, so that a rejected code
+                // leaves the camera running.
+                List<ScannedCode> codes = CodeScanner.filterCodes(readCodes(session, maxCodesPerFrame, payloadFormats));
+                if (codes == null) {
+                    return;
+                }
+                int req = requestId;
+                if (!continuous) {
+                    inProgress = false;
+                    session.stopScanning();
+                    activity.runOnUiThread(new Runnable() {
+                        public void run() {
+                            hide();
+                        }
+                    });
+                }
+                CodeScanner.scanBatchCompletedCallback(req, codes);
+            }
+        });
+        container = new FrameLayout(activity);
+        container.addView(picker, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        Button cancel = new Button(activity);
+        cancel.setText("Cancel");
+        cancel.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                cancel();
+            }
+        });
+        container.addView(cancel, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL));
+        // The overlay takes focus while it is shown, so that the back button cancels
+        // the scan instead of reaching the form underneath.
+        container.setFocusable(true);
+        container.setFocusableInTouchMode(true);
+        container.setOnKeyListener(new View.OnKeyListener() {
+            public boolean onKey(View v, int keyCode, KeyEvent event) {
+                if (keyCode != KeyEvent.KEYCODE_BACK || !inProgress) {
+                    return false;
+                }
+                if (event.getAction() == KeyEvent.ACTION_UP) {
+                    cancel();
+                }
+                return true;
             }
         });
+    }
 
-        
+    /**
+     * Closes the scanner like the user canceled it.  Must be called on the UI thread.
+     */
+    private void cancel() {
+        if (!inProgress) {
+            return;
+        }
+        int req = requestId;
+        inProgress = false;
+        hide();
+        CodeScanner.scanCanceledCallback(req);
+    }
+
+    /**
+     * Stops the cameras while the activity is paused, and restarts the ones that 
+     * were scanning when it resumes.  The overlay and the embedded views don't get 
+     * this from an activity of their own.
+     */
+    private void addLifecycleListener() {
+        if (lifecycleListener != null) {
+            return;
+        }
+        lifecycleListener = new LifecycleListener() {
+            public void onCreate(Bundle savedInstanceState) {
+            }
+
+            public void onResume() {
+                if (inProgress && picker != null) {
+                    picker.startScanning();
+                }
+                for (ViewPicker vp : viewPickers.values()) {
+                    if (vp.scanning) {
+                        vp.picker.startScanning();
+                    }
+                }
+            }
+
+            public void onPause() {
+                if (inProgress && picker != null) {
+                    picker.stopScanning();
+                }
+                for (ViewPicker vp : viewPickers.values()) {
+                    if (vp.scanning) {
+                        vp.picker.stopScanning();
+                    }
+                }
+            }
+
+            public void onDestroy() {
+            }
+
+            public void onSaveInstanceState(Bundle b) {
+            }
+
+            public void onLowMemory() {
+            }
+        };
+        AndroidNativeUtil.addLifecycleListener(lifecycleListener);
+    }
+
+    private void show(final int requestId, final int symbologyMask, final boolean continuous) {
+        final Activity activity = AndroidNativeUtil.getActivity();
+        final int maxCodes = CodeScanner.getInstance().getMaxCodesPerFrame();
+        final int payload = CodeScanner.getInstance().getPayloadFormats();
+        final ScanArea area = CodeScanner.getInstance().getActiveScanArea();
+        final ScanProfile profile = CodeScanner.getInstance().getProfile();
+        final int version = CodeScanner.getInstance().getSettingsVersion();
+        activity.runOnUiThread(new Runnable() {
+            public void run() {
+                createPicker(activity);
+                long key = settingsKey(symbologyMask, maxCodes, !continuous, version);
+                if (key != appliedSettings) {
+                    picker.applyScanSettings(createSettings(symbologyMask, maxCodes, area, profile, !continuous));
+                    appliedSettings = key;
+                }
+                NativeCodeScannerImpl.this.continuous = continuous;
+                NativeCodeScannerImpl.this.requestId = requestId;
+                maxCodesPerFrame = maxCodes;
+                payloadFormats = payload;
+                inProgress = true;
+                if (container.getParent() == null) {
+                    activity.addContentView(container, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+                }
+                container.requestFocus();
+                picker.startScanning();
+                CodeScanner.markPhase(ScanMetrics.PHASE_PRESENTED);
+            }
+        });
+    }
+
+    private void hide() {
+        if (picker == null) {
+            return;
+        }
+        picker.stopScanning();
+        ViewGroup parent = (ViewGroup)container.getParent();
+        if (parent != null) {
+            parent.removeView(container);
+        }
+    }
 
-        
+    public boolean isSupportKnown() {
+        return AndroidNativeUtil.getActivity() != null;
     }
 
     public boolean isSupported() {
-        return true;
+        Activity activity = AndroidNativeUtil.getActivity();
+        return activity == null || activity.getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY);
     }
 
 }
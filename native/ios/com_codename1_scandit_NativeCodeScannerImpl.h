@@ -3,6 +3,15 @@
 @interface com_codename1_scandit_NativeCodeScannerImpl : NSObject {
 }
 
--(void)scan:(NSData*)param;
+-(void)scan:(int)param param1:(int)param1;
+-(void)startSession:(int)param;
+-(void)stopSession;
+-(void)warmUp;
+-(void)releaseScanner;
+-(void*)createScannerView:(int)param;
+-(void)startViewScanning:(int)param param1:(int)param1;
+-(void)stopViewScanning:(int)param;
+-(void)releaseScannerView:(int)param;
+-(BOOL)isSupportKnown;
 -(BOOL)isSupported;
 @end
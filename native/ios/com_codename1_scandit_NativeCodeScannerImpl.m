@@ -2,7 +2,36 @@
 
 @implementation com_codename1_scandit_NativeCodeScannerImpl
 
--(void)scan:(NSData*)param{
+-(void)scan:(int)param param1:(int)param1{
+}
+
+-(void)startSession:(int)param{
+}
+
+-(void)stopSession{
+}
+
+-(void)warmUp{
+}
+
+-(void)releaseScanner{
+}
+
+-(void*)createScannerView:(int)param{
+    return nil;
+}
+
+-(void)startViewScanning:(int)param param1:(int)param1{
+}
+
+-(void)stopViewScanning:(int)param{
+}
+
+-(void)releaseScannerView:(int)param{
+}
+
+-(BOOL)isSupportKnown{
+    return YES;
 }
 
 -(BOOL)isSupported{
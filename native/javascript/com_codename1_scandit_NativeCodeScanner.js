@@ -2,10 +2,46 @@
 
 var o = {};
 
-    o.scan__int_1ARRAY = function(param1, callback) {
+    o.scan__int_int = function(param1, param2, callback) {
         callback.error(new Error("Not implemented yet"));
     };
 
+    o.startSession__int = function(param1, callback) {
+        callback.error(new Error("Not implemented yet"));
+    };
+
+    o.stopSession_ = function(callback) {
+        callback.error(new Error("Not implemented yet"));
+    };
+
+    o.warmUp_ = function(callback) {
+        callback.error(new Error("Not implemented yet"));
+    };
+
+    o.releaseScanner_ = function(callback) {
+        callback.error(new Error("Not implemented yet"));
+    };
+
+    o.createScannerView__int = function(param1, callback) {
+        callback.error(new Error("Not implemented yet"));
+    };
+
+    o.startViewScanning__int_int = function(param1, param2, callback) {
+        callback.error(new Error("Not implemented yet"));
+    };
+
+    o.stopViewScanning__int = function(param1, callback) {
+        callback.error(new Error("Not implemented yet"));
+    };
+
+    o.releaseScannerView__int = function(param1, callback) {
+        callback.error(new Error("Not implemented yet"));
+    };
+
+    o.isSupportKnown_ = function(callback) {
+        callback.complete(true);
+    };
+
     o.isSupported_ = function(callback) {
         callback.complete(false);
     };
@@ -0,0 +1,646 @@
+package com.codename1.scandit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pure Java decoder for the common 1D symbologies: EAN-13, UPC-A, EAN-8, Code 128 
+ * and Code 39.  It reads a number of rows across the middle of the frame, in both 
+ * directions, so codes can be upside down but should be roughly horizontal.
+ * 
+ * <p>EAN, UPC and Code 128 results are verified with their check digits.  Code 39
+ * has no check digit, so it is only accepted between complete start and stop 
+ * characters.</p>
+ * 
+ * <p>An instance keeps its working buffers between frames, so it should only be used 
+ * from one thread at a time.</p>
+ */
+class LinearCodeDecoder implements CodeDecoder {
+    
+    /**
+     * The symbologies that this decoder can read.
+     */
+    static final int SUPPORTED_SYMBOLOGIES = CodeScanner.SYMBOLOGY_EAN13
+            | CodeScanner.SYMBOLOGY_UPC12
+            | CodeScanner.SYMBOLOGY_EAN8
+            | CodeScanner.SYMBOLOGY_CODE128
+            | CodeScanner.SYMBOLOGY_CODE39;
+    
+    private static final int SCAN_ROWS = 15;
+    private static final int MIN_CONTRAST = 32;
+    private static final float MAX_AVG_VARIANCE = 0.48f;
+    private static final float MAX_INDIVIDUAL_VARIANCE = 0.7f;
+    private static final float NO_MATCH = Float.MAX_VALUE;
+    
+    private static final int[] GUARD = {1, 1, 1};
+    private static final int[] MIDDLE_GUARD = {1, 1, 1, 1, 1};
+    
+    /**
+     * Widths of the EAN L digits, starting with a space.  G digits are the same
+     * widths reversed, and R digits are the same widths starting with a bar.
+     */
+    private static final int[][] L_PATTERNS = {
+        {3, 2, 1, 1}, {2, 2, 2, 1}, {2, 1, 2, 2}, {1, 4, 1, 1}, {1, 1, 3, 2},
+        {1, 2, 3, 1}, {1, 1, 1, 4}, {1, 3, 1, 2}, {1, 2, 1, 3}, {3, 1, 1, 2}
+    };
+    private static final int[][] G_PATTERNS;
+    
+    /**
+     * The parity of the first 6 EAN-13 digits for each value of the leading digit.
+     * A set bit is a G digit, with the first digit in bit 5.
+     */
+    private static final int[] FIRST_DIGIT_PARITY = {
+        0x00, 0x0B, 0x0D, 0x0E, 0x13, 0x19, 0x1C, 0x15, 0x16, 0x1A
+    };
+    
+    /**
+     * Widths of the Code 128 symbols, starting with a bar.
+     */
+    private static final String[] CODE128_PATTERNS = {
+        "212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312", "132212", "221213",
+        "221312", "231212", "112232", "122132", "122231", "113222", "123122", "123221", "223211", "221132",
+        "221231", "213212", "223112", "312131", "311222", "321122", "321221", "312212", "322112", "322211",
+        "212123", "212321", "232121", "111323", "131123", "131321", "112313", "132113", "132311", "211313",
+        "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121", "313121", "211331",
+        "231131", "213113", "213311", "213131", "311123", "311321", "331121", "312113", "312311", "332111",
+        "314111", "221411", "431111", "111224", "111422", "121124", "121421", "141122", "141221", "112214",
+        "112412", "122114", "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+        "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112", "421211", "212141",
+        "214121", "412121", "111143", "111341", "131141", "114113", "114311", "411113", "411311", "113141",
+        "114131", "311141", "411131", "211412", "211214", "211232"
+    };
+    private static final int[][] CODE128_WIDTHS;
+    private static final int[] CODE128_STOP = {2, 3, 3, 1, 1, 1, 2};
+    private static final int CODE128_START_A = 103;
+    private static final int CODE128_START_B = 104;
+    private static final int CODE128_START_C = 105;
+    private static final int CODE128_SHIFT = 98;
+    private static final int CODE128_CODE_C = 99;
+    private static final int CODE128_CODE_B = 100;
+    private static final int CODE128_CODE_A = 101;
+    private static final int CODE128_FNC1 = 102;
+    private static final char GS = 29;
+    
+    private static final String CODE39_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. $/+%*";
+    
+    /**
+     * The wide elements of each Code 39 character in {@link #CODE39_ALPHABET}.  The 
+     * first of the 9 elements is in bit 8.
+     */
+    private static final int[] CODE39_ENCODINGS = {
+        0x034, 0x121, 0x061, 0x160, 0x031, 0x130, 0x070, 0x025, 0x124, 0x064,
+        0x109, 0x049, 0x148, 0x019, 0x118, 0x058, 0x00D, 0x10C, 0x04C, 0x01C,
+        0x103, 0x043, 0x142, 0x013, 0x112, 0x052, 0x007, 0x106, 0x046, 0x016,
+        0x181, 0x0C1, 0x1C0, 0x091, 0x190, 0x0D0, 0x085, 0x184, 0x0C4, 0x0A8,
+        0x0A2, 0x08A, 0x02A, 0x094
+    };
+    private static final int CODE39_ASTERISK = 0x094;
+    
+    static {
+        G_PATTERNS = new int[10][];
+        for (int i=0; i<10; i++) {
+            int[] l = L_PATTERNS[i];
+            G_PATTERNS[i] = new int[]{l[3], l[2], l[1], l[0]};
+        }
+        CODE128_WIDTHS = new int[CODE128_PATTERNS.length][];
+        for (int i=0; i<CODE128_PATTERNS.length; i++) {
+            String p = CODE128_PATTERNS[i];
+            int[] w = new int[6];
+            for (int j=0; j<6; j++) {
+                w[j] = p.charAt(j) - '0';
+            }
+            CODE128_WIDTHS[i] = w;
+        }
+    }
+    
+    private int[] runs = new int[0];
+    private int runCount;
+    private final int[] digits = new int[13];
+    private final int[] symbols = new int[128];
+    private final int[] code39Widths = new int[9];
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public List<ScannedCode> decode(int[] argb, int width, int height, int symbologyMask, int maxCodes) {
+        int mask = symbologyMask & SUPPORTED_SYMBOLOGIES;
+        if (mask == 0 || width <= 0 || height <= 0) {
+            return null;
+        }
+        List<ScannedCode> out = null;
+        int step = Math.max(1, height / (SCAN_ROWS + 1));
+        for (int r=0; r<SCAN_ROWS; r++) {
+            // Start at the middle and work outwards
+            int offset = ((r + 1) / 2) * step;
+            int y = height / 2 + ((r & 1) == 0 ? offset : -offset);
+            if (y < 0 || y >= height || !readRuns(argb, width, y)) {
+                continue;
+            }
+            for (int pass=0; pass<2; pass++) {
+                if (pass == 1) {
+                    reverseRuns();
+                }
+                ScannedCode code = decodeRow(mask);
+                if (code != null && !contains(out, code)) {
+                    if (out == null) {
+                        out = new ArrayList<ScannedCode>(maxCodes);
+                    }
+                    out.add(code);
+                    if (out.size() >= maxCodes) {
+                        return out;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+    
+    private static boolean contains(List<ScannedCode> codes, ScannedCode code) {
+        if (codes == null) {
+            return false;
+        }
+        for (ScannedCode c : codes) {
+            if (c.getContents().equals(code.getContents()) && c.getFormatName().equals(code.getFormatName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Reads a row into run lengths.  Even runs are light and odd runs are dark.  The first
+     * and last runs are always light, though they may be empty.
+     * @return False if the row doesn't have enough contrast.
+     */
+    private boolean readRuns(int[] argb, int width, int y) {
+        int base = y * width;
+        int min = 255;
+        int max = 0;
+        for (int x=0; x<width; x++) {
+            int l = luminance(argb[base + x]);
+            if (l < min) {
+                min = l;
+            }
+            if (l > max) {
+                max = l;
+            }
+        }
+        if (max - min < MIN_CONTRAST) {
+            return false;
+        }
+        int threshold = (min + max) >> 1;
+        if (runs.length < width + 2) {
+            runs = new int[width + 2];
+        }
+        int n = 0;
+        boolean dark = false;
+        int len = 0;
+        for (int x=0; x<width; x++) {
+            boolean d = luminance(argb[base + x]) < threshold;
+            if (d == dark) {
+                len++;
+            } else {
+                runs[n++] = len;
+                dark = d;
+                len = 1;
+            }
+        }
+        runs[n++] = len;
+        if (dark) {
+            runs[n++] = 0;
+        }
+        runCount = n;
+        return true;
+    }
+    
+    private static int luminance(int argb) {
+        int r = (argb >> 16) & 0xff;
+        int g = (argb >> 8) & 0xff;
+        int b = argb & 0xff;
+        return (r + (g << 1) + b) >> 2;
+    }
+    
+    private void reverseRuns() {
+        for (int i=0, j=runCount-1; i<j; i++, j--) {
+            int t = runs[i];
+            runs[i] = runs[j];
+            runs[j] = t;
+        }
+    }
+    
+    private ScannedCode decodeRow(int mask) {
+        for (int i=1; i<runCount; i+=2) {
+            ScannedCode code = null;
+            if ((mask & (CodeScanner.SYMBOLOGY_EAN13 | CodeScanner.SYMBOLOGY_UPC12)) != 0) {
+                code = decodeEan13(i, mask);
+            }
+            if (code == null && (mask & CodeScanner.SYMBOLOGY_EAN8) != 0) {
+                code = decodeEan8(i);
+            }
+            if (code == null && (mask & CodeScanner.SYMBOLOGY_CODE128) != 0) {
+                code = decodeCode128(i);
+            }
+            if (code == null && (mask & CodeScanner.SYMBOLOGY_CODE39) != 0) {
+                code = decodeCode39(i);
+            }
+            if (code != null) {
+                return code;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Measures how far a sequence of runs is from a pattern of module widths.
+     * @return The average variance per module, or {@link #NO_MATCH}.
+     */
+    private float variance(int off, int[] pattern) {
+        int len = pattern.length;
+        if (off + len > runCount) {
+            return NO_MATCH;
+        }
+        int total = 0;
+        int modules = 0;
+        for (int i=0; i<len; i++) {
+            total += runs[off + i];
+            modules += pattern[i];
+        }
+        if (total < modules) {
+            return NO_MATCH;
+        }
+        float unit = total / (float)modules;
+        float maxIndividual = MAX_INDIVIDUAL_VARIANCE * unit;
+        float sum = 0;
+        for (int i=0; i<len; i++) {
+            float d = Math.abs(runs[off + i] - pattern[i] * unit);
+            if (d > maxIndividual) {
+                return NO_MATCH;
+            }
+            sum += d;
+        }
+        return sum / total;
+    }
+    
+    private boolean matches(int off, int[] pattern) {
+        return variance(off, pattern) < MAX_AVG_VARIANCE;
+    }
+    
+    /**
+     * Checks that there is a light area before a start pattern at least as wide as the 
+     * pattern's first few modules.
+     */
+    private boolean hasQuietZone(int start, int patternRuns) {
+        if (start < 1) {
+            return false;
+        }
+        int width = 0;
+        for (int i=0; i<patternRuns; i++) {
+            width += runs[start + i];
+        }
+        return runs[start - 1] >= width;
+    }
+    
+    /**
+     * Decodes an EAN digit.
+     * @return The digit, the digit + 10 for a G digit, or -1.
+     */
+    private int decodeEanDigit(int off, boolean allowG) {
+        float best = MAX_AVG_VARIANCE;
+        int out = -1;
+        for (int d=0; d<10; d++) {
+            float v = variance(off, L_PATTERNS[d]);
+            if (v < best) {
+                best = v;
+                out = d;
+            }
+            if (allowG) {
+                v = variance(off, G_PATTERNS[d]);
+                if (v < best) {
+                    best = v;
+                    out = d + 10;
+                }
+            }
+        }
+        return out;
+    }
+    
+    private ScannedCode decodeEan13(int start, int mask) {
+        if (start + 59 > runCount || !matches(start, GUARD) || !hasQuietZone(start, 3)) {
+            return null;
+        }
+        int off = start + 3;
+        int parity = 0;
+        for (int i=0; i<6; i++) {
+            int d = decodeEanDigit(off, true);
+            if (d < 0) {
+                return null;
+            }
+            if (d >= 10) {
+                d -= 10;
+                parity |= 1 << (5 - i);
+            }
+            digits[i + 1] = d;
+            off += 4;
+        }
+        if (!matches(off, MIDDLE_GUARD)) {
+            return null;
+        }
+        off += 5;
+        for (int i=0; i<6; i++) {
+            int d = decodeEanDigit(off, false);
+            if (d < 0) {
+                return null;
+            }
+            digits[i + 7] = d;
+            off += 4;
+        }
+        if (!matches(off, GUARD)) {
+            return null;
+        }
+        int first = -1;
+        for (int i=0; i<FIRST_DIGIT_PARITY.length; i++) {
+            if (FIRST_DIGIT_PARITY[i] == parity) {
+                first = i;
+                break;
+            }
+        }
+        if (first < 0) {
+            return null;
+        }
+        digits[0] = first;
+        if (!checkEan(13)) {
+            return null;
+        }
+        if (first == 0 && (mask & CodeScanner.SYMBOLOGY_UPC12) != 0) {
+            return create(digitString(1, 13), "UPC12");
+        }
+        if ((mask & CodeScanner.SYMBOLOGY_EAN13) == 0) {
+            return null;
+        }
+        return create(digitString(0, 13), "EAN13");
+    }
+    
+    private ScannedCode decodeEan8(int start) {
+        if (start + 43 > runCount || !matches(start, GUARD) || !hasQuietZone(start, 3)) {
+            return null;
+        }
+        int off = start + 3;
+        for (int i=0; i<8; i++) {
+            if (i == 4) {
+                if (!matches(off, MIDDLE_GUARD)) {
+                    return null;
+                }
+                off += 5;
+            }
+            int d = decodeEanDigit(off, false);
+            if (d < 0) {
+                return null;
+            }
+            digits[i] = d;
+            off += 4;
+        }
+        if (!matches(off, GUARD) || !checkEan(8)) {
+            return null;
+        }
+        return create(digitString(0, 8), "EAN8");
+    }
+    
+    private boolean checkEan(int len) {
+        int sum = 0;
+        int weight = 3;
+        for (int i=len-2; i>=0; i--) {
+            sum += digits[i] * weight;
+            weight = 4 - weight;
+        }
+        return (10 - sum % 10) % 10 == digits[len - 1];
+    }
+    
+    private String digitString(int from, int to) {
+        text.setLength(0);
+        for (int i=from; i<to; i++) {
+            text.append((char)('0' + digits[i]));
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Decodes a Code 128 symbol.
+     * @param first The first symbol to try.
+     * @param last The last symbol to try.
+     * @return The symbol value, or -1.
+     */
+    private int decodeCode128Symbol(int off, int first, int last) {
+        float best = MAX_AVG_VARIANCE;
+        int out = -1;
+        for (int i=first; i<=last; i++) {
+            float v = variance(off, CODE128_WIDTHS[i]);
+            if (v < best) {
+                best = v;
+                out = i;
+            }
+        }
+        return out;
+    }
+    
+    private ScannedCode decodeCode128(int start) {
+        if (start + 6 > runCount || !hasQuietZone(start, 2)) {
+            return null;
+        }
+        int startCode = decodeCode128Symbol(start, CODE128_START_A, CODE128_START_C);
+        if (startCode < 0) {
+            return null;
+        }
+        int count = 0;
+        int off = start + 6;
+        while (true) {
+            if (off + 7 > runCount) {
+                return null;
+            }
+            float stop = variance(off, CODE128_STOP);
+            int code = decodeCode128Symbol(off, 0, CODE128_FNC1);
+            if (stop < MAX_AVG_VARIANCE && (code < 0 || stop <= variance(off, CODE128_WIDTHS[code]))) {
+                break;
+            }
+            if (code < 0 || count == symbols.length) {
+                return null;
+            }
+            symbols[count++] = code;
+            off += 6;
+        }
+        // At least one data symbol and the check symbol
+        if (count < 2) {
+            return null;
+        }
+        int check = startCode;
+        for (int i=0; i<count-1; i++) {
+            check += (i + 1) * symbols[i];
+        }
+        if (check % 103 != symbols[count - 1]) {
+            return null;
+        }
+        String contents = code128Text(startCode, count - 1);
+        if (contents == null || contents.length() == 0) {
+            return null;
+        }
+        return create(contents, "CODE128");
+    }
+    
+    private String code128Text(int startCode, int count) {
+        final int setA = 0;
+        final int setB = 1;
+        final int setC = 2;
+        int set = startCode == CODE128_START_A ? setA : startCode == CODE128_START_B ? setB : setC;
+        boolean shift = false;
+        text.setLength(0);
+        for (int i=0; i<count; i++) {
+            int c = symbols[i];
+            int cur = set;
+            if (shift) {
+                cur = set == setA ? setB : setA;
+                shift = false;
+            }
+            if (c == CODE128_FNC1) {
+                // FNC1 in the first position marks GS1 data, otherwise it is a separator
+                if (text.length() > 0) {
+                    text.append(GS);
+                }
+                continue;
+            }
+            if (cur == setC) {
+                if (c < 100) {
+                    if (c < 10) {
+                        text.append('0');
+                    }
+                    text.append(c);
+                } else if (c == CODE128_CODE_B) {
+                    set = setB;
+                } else if (c == CODE128_CODE_A) {
+                    set = setA;
+                }
+                continue;
+            }
+            if (c < 96) {
+                if (cur == setA) {
+                    text.append((char)(c < 64 ? c + 32 : c - 64));
+                } else {
+                    text.append((char)(c + 32));
+                }
+                continue;
+            }
+            switch (c) {
+                case CODE128_SHIFT:
+                    if (set != setC) {
+                        shift = true;
+                    }
+                    break;
+                case CODE128_CODE_C:
+                    set = setC;
+                    break;
+                case CODE128_CODE_B:
+                    if (cur == setA) {
+                        set = setB;
+                    }
+                    // FNC4 in set B is not supported
+                    break;
+                case CODE128_CODE_A:
+                    if (cur == setB) {
+                        set = setA;
+                    }
+                    break;
+                default:
+                    // FNC2 and FNC3 carry no data
+                    break;
+            }
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Decodes a Code 39 character.
+     * @return The index in {@link #CODE39_ALPHABET}, or -1.
+     */
+    private int decodeCode39Char(int off) {
+        if (off + 9 > runCount) {
+            return -1;
+        }
+        for (int i=0; i<9; i++) {
+            code39Widths[i] = runs[off + i];
+        }
+        // Find the narrow/wide threshold that gives exactly 3 wide elements
+        int maxNarrow = 0;
+        while (true) {
+            int min = Integer.MAX_VALUE;
+            for (int w : code39Widths) {
+                if (w < min && w > maxNarrow) {
+                    min = w;
+                }
+            }
+            if (min == Integer.MAX_VALUE) {
+                return -1;
+            }
+            maxNarrow = min;
+            int wide = 0;
+            int totalWide = 0;
+            int pattern = 0;
+            for (int i=0; i<9; i++) {
+                if (code39Widths[i] > maxNarrow) {
+                    pattern |= 1 << (8 - i);
+                    wide++;
+                    totalWide += code39Widths[i];
+                }
+            }
+            if (wide == 3) {
+                for (int i=0; i<9; i++) {
+                    if (code39Widths[i] > maxNarrow && code39Widths[i] * 2 >= totalWide) {
+                        // One wide element is far wider than the others
+                        return -1;
+                    }
+                }
+                for (int i=0; i<CODE39_ENCODINGS.length; i++) {
+                    if (CODE39_ENCODINGS[i] == pattern) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            if (wide < 3) {
+                return -1;
+            }
+        }
+    }
+    
+    private ScannedCode decodeCode39(int start) {
+        if (!hasQuietZone(start, 3)) {
+            return null;
+        }
+        int c = decodeCode39Char(start);
+        if (c < 0 || CODE39_ENCODINGS[c] != CODE39_ASTERISK) {
+            return null;
+        }
+        // Each character is followed by a narrow space
+        int off = start + 10;
+        text.setLength(0);
+        while (true) {
+            c = decodeCode39Char(off);
+            if (c < 0) {
+                return null;
+            }
+            if (CODE39_ENCODINGS[c] == CODE39_ASTERISK) {
+                break;
+            }
+            text.append(CODE39_ALPHABET.charAt(c));
+            off += 10;
+        }
+        if (text.length() == 0) {
+            return null;
+        }
+        return create(text.toString(), "CODE39");
+    }
+    
+    private static ScannedCode create(String contents, String formatName) {
+        byte[] raw = new byte[contents.length()];
+        for (int i=0; i<raw.length; i++) {
+            raw[i] = (byte)contents.charAt(i);
+        }
+        return new ScannedCode(contents, formatName, raw);
+    }
+}
@@ -1,11 +1,300 @@
 package com.codename1.scandit;
 
+import com.codename1.io.Log;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+/**
+ * Scanner for the simulator and desktop.  There is no camera, so frames are read from
+ * image files and decoded with a {@link CodeDecoder}.
+ *
+ * <p>The frames are read from the file or folder in the {@literal cn1.scandit.frames}
+ * system property.  A folder is read in file name order.  Each single scan continues
+ * from the frame after the one that the last scan stopped at, so a folder of images
+ * can be replayed one scan at a time.  If the property isn't set, the user is asked
+ * to pick an image, unless running headless.</p>
+ *
+ * <p>Sessions decode every frame in turn.  Set {@literal cn1.scandit.loop=true} to
+ * repeat the frames until the session is stopped, and {@literal cn1.scandit.frameInterval}
+ * to a number of milliseconds to wait between frames, to simulate a camera frame rate.
+ * Otherwise the maximum frame rate of the {@link ScanProfile} is used.</p>
+ *
+ * <p>If a {@link ScanArea} is set, only that part of each image is decoded.  Codes that
+ * are rejected by a {@link ScanFilter} are treated like frames without a code.</p>
+ */
 public class NativeCodeScannerImpl implements com.codename1.scandit.NativeCodeScanner{
-    public void scan(int[] param) {
+    static final String FRAMES_PROPERTY = "cn1.scandit.frames";
+    static final String LOOP_PROPERTY = "cn1.scandit.loop";
+    static final String FRAME_INTERVAL_PROPERTY = "cn1.scandit.frameInterval";
+
+    private static final String[] IMAGE_EXTENSIONS = {"png", "jpg", "jpeg", "gif", "bmp"};
+
+    private final Object decodeLock = new Object();
+    private CodeDecoder defaultDecoder;
+    private int[] pixels = new int[0];
+    private int nextFrame;
+    private volatile boolean sessionRunning;
+    private Thread sessionThread;
+
+    public void scan(final int requestId, final int symbologyMask) {
+        final int maxCodes = CodeScanner.getInstance().getMaxCodesPerFrame();
+        final int payload = CodeScanner.getInstance().getPayloadFormats();
+        start("CodeScanner decoder", ()->{
+            File[] frames = getFrames();
+            if (frames == null || frames.length == 0) {
+                CodeScanner.scanCanceledCallback(requestId);
+                return;
+            }
+            CodeScanner.markPhase(ScanMetrics.PHASE_PRESENTED);
+            try {
+                for (int i=0; i<frames.length; i++) {
+                    File frame = frames[(nextFrame + i) % frames.length];
+                    List<ScannedCode> codes = decode(frame, symbologyMask, maxCodes, payload);
+                    if (codes != null) {
+                        nextFrame = (nextFrame + i + 1) % frames.length;
+                        CodeScanner.scanBatchCompletedCallback(requestId, codes);
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                Log.e(t);
+                CodeScanner.scanErrorCallback(requestId, 0, t.getMessage());
+                return;
+            }
+            // Like the user closing the scanner without finding a code
+            CodeScanner.scanCanceledCallback(requestId);
+        });
+    }
+
+    public void startSession(final int symbologyMask) {
+        final int maxCodes = CodeScanner.getInstance().getMaxCodesPerFrame();
+        final int payload = CodeScanner.getInstance().getPayloadFormats();
+        final boolean loop = Boolean.getBoolean(LOOP_PROPERTY);
+        final int fps = CodeScanner.getInstance().getProfile().getMaxFrameRate();
+        final long interval = Long.getLong(FRAME_INTERVAL_PROPERTY, fps > 0 ? 1000 / fps : 0L);
+        sessionRunning = true;
+        sessionThread = start("CodeScanner session", ()->{
+            File[] frames = getFrames();
+            if (frames == null || frames.length == 0) {
+                if (sessionRunning) {
+                    sessionRunning = false;
+                    CodeScanner.scanCanceledCallback(ScanDispatcher.SESSION_TOKEN);
+                }
+                return;
+            }
+            CodeScanner.markPhase(ScanMetrics.PHASE_PRESENTED);
+            try {
+                do {
+                    for (File frame : frames) {
+                        if (!sessionRunning) {
+                            return;
+                        }
+                        List<ScannedCode> codes = decode(frame, symbologyMask, maxCodes, payload);
+                        if (codes != null && sessionRunning) {
+                            CodeScanner.scanBatchCompletedCallback(ScanDispatcher.SESSION_TOKEN, codes);
+                        }
+                        if (interval > 0) {
+                            Thread.sleep(interval);
+                        }
+                    }
+                } while (loop && sessionRunning);
+            } catch (InterruptedException ex) {
+                // Stopped
+            } catch (Throwable t) {
+                Log.e(t);
+                if (sessionRunning) {
+                    CodeScanner.scanErrorCallback(ScanDispatcher.SESSION_TOKEN, 0, t.getMessage());
+                }
+            }
+        });
+    }
+
+    public void stopSession() {
+        sessionRunning = false;
+        Thread t = sessionThread;
+        sessionThread = null;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    public void warmUp() {
+        synchronized (decodeLock) {
+            getDefaultDecoder();
+        }
+    }
+
+    public void releaseScanner() {
+        stopSession();
+        synchronized (decodeLock) {
+            defaultDecoder = null;
+            pixels = new int[0];
+        }
+    }
+
+    public com.codename1.ui.PeerComponent createScannerView(int viewId) {
+        return null;
+    }
+
+    public void startViewScanning(int viewId, int symbologyMask) {
+    }
+
+    public void stopViewScanning(int viewId) {
+    }
+
+    public void releaseScannerView(int viewId) {
+    }
+
+    public boolean isSupportKnown() {
+        return true;
     }
 
     public boolean isSupported() {
-        return false;
+        return true;
+    }
+
+    private static Thread start(String name, Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private CodeDecoder getDefaultDecoder() {
+        if (defaultDecoder == null) {
+            final CodeDecoder zxing = ZXingCodeDecoder.create();
+            final CodeDecoder linear = new LinearCodeDecoder();
+            if (zxing == null) {
+                defaultDecoder = linear;
+            } else {
+                defaultDecoder = (argb, width, height, symbologyMask, maxCodes)->{
+                    List<ScannedCode> out = zxing.decode(argb, width, height, symbologyMask, maxCodes);
+                    if (out == null) {
+                        out = linear.decode(argb, width, height, symbologyMask, maxCodes);
+                    }
+                    return out;
+                };
+            }
+        }
+        return defaultDecoder;
     }
 
+    /**
+     * Decodes a frame.  Decoding is serialized since the decoders and the pixel buffer
+     * are reused between frames.
+     */
+    private List<ScannedCode> decode(File frame, int symbologyMask, int maxCodes, int payload) throws IOException {
+        BufferedImage img = ImageIO.read(frame);
+        if (img == null) {
+            throw new IOException("Unsupported image format: "+frame);
+        }
+        int x = 0;
+        int y = 0;
+        int w = img.getWidth();
+        int h = img.getHeight();
+        ScanArea area = CodeScanner.getInstance().getActiveScanArea();
+        if (area != null && !area.isFull()) {
+            // Only decode the scan area, like the recognition engine does on devices
+            boolean portrait = h >= w;
+            float ax = portrait ? area.getX() : area.getLandscapeX();
+            float ay = portrait ? area.getY() : area.getLandscapeY();
+            float aw = portrait ? area.getWidth() : area.getLandscapeWidth();
+            float ah = portrait ? area.getHeight() : area.getLandscapeHeight();
+            x = Math.min(w - 1, (int)(ax * w));
+            y = Math.min(h - 1, (int)(ay * h));
+            w = Math.max(1, Math.min(w - x, Math.round(aw * w)));
+            h = Math.max(1, Math.min(h - y, Math.round(ah * h)));
+        }
+        List<ScannedCode> codes;
+        synchronized (decodeLock) {
+            if (pixels.length < w * h) {
+                pixels = new int[w * h];
+            }
+            img.getRGB(x, y, w, h, pixels, 0, w);
+            CodeDecoder decoder = CodeScanner.getInstance().getSoftwareDecoder();
+            if (decoder == null) {
+                decoder = getDefaultDecoder();
+            }
+            codes = decoder.decode(pixels, w, h, symbologyMask, maxCodes);
+        }
+        if (codes == null || codes.isEmpty()) {
+            return null;
+        }
+        CodeScanner.markPhase(ScanMetrics.PHASE_RECOGNIZED);
+        if (codes.size() > maxCodes) {
+            codes = new ArrayList<ScannedCode>(codes.subList(0, maxCodes));
+        }
+        // Rejected codes count as frames without a code, so a single scan moves on
+        return CodeScanner.filterCodes(applyPayloadFormats(codes, payload));
+    }
+
+    private static List<ScannedCode> applyPayloadFormats(List<ScannedCode> codes, int payload) {
+        boolean text = (payload & CodeScanner.PAYLOAD_TEXT) != 0;
+        boolean raw = (payload & CodeScanner.PAYLOAD_RAW_BYTES) != 0;
+        if (text && raw) {
+            return codes;
+        }
+        List<ScannedCode> out = new ArrayList<ScannedCode>(codes.size());
+        for (ScannedCode c : codes) {
+            out.add(new ScannedCode(text ? c.getContents() : null, c.getFormatName(), raw ? c.getRawBytes() : null));
+        }
+        return out;
+    }
+
+    private File[] getFrames() {
+        String path = System.getProperty(FRAMES_PROPERTY);
+        if (path != null) {
+            File f = new File(path);
+            if (f.isDirectory()) {
+                File[] files = f.listFiles((dir, name)->isImage(name));
+                if (files == null) {
+                    return null;
+                }
+                Arrays.sort(files);
+                return files;
+            }
+            if (f.exists()) {
+                return new File[]{f};
+            }
+            Log.p("Scan frames not found at "+path);
+            return null;
+        }
+        if (GraphicsEnvironment.isHeadless()) {
+            Log.p("No scan frames.  Set the "+FRAMES_PROPERTY+" system property to an image file or folder of images.");
+            return null;
+        }
+        final File[] out = new File[1];
+        try {
+            SwingUtilities.invokeAndWait(()->{
+                JFileChooser chooser = new JFileChooser();
+                chooser.setDialogTitle("Select an image to scan");
+                chooser.setFileFilter(new FileNameExtensionFilter("Images", IMAGE_EXTENSIONS));
+                if (chooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+                    out[0] = chooser.getSelectedFile();
+                }
+            });
+        } catch (Exception ex) {
+            Log.e(ex);
+        }
+        return out[0] == null ? null : out;
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase();
+        for (String ext : IMAGE_EXTENSIONS) {
+            if (lower.endsWith("."+ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -3,18 +3,45 @@ package com.codename1.scandit;
 import com.codename1.components.SpanLabel;
 import com.codename1.components.ToastBar;
 import com.codename1.io.Log;
-import com.codename1.io.Util;
 import com.codename1.ui.Command;
 import com.codename1.ui.Dialog;
 import com.codename1.ui.Display;
 import com.codename1.ui.FontImage;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
 
+/**
+ * Extracts the Scandit SDK into the project's native directories.  A manifest of the
+ * size, modification time and SHA-256 hash of each extracted file is kept in the 
+ * project's {@literal build} directory, so that it never ships with the iOS native files.
+ * Files are only copied when they change, and a successful extraction only runs once 
+ * per simulator launch.
+ */
 public class ScanditInstallerImpl implements com.codename1.scandit.ScanditInstaller{
+    private static final File MANIFEST_FILE = new File("build", "scandit-sdk-manifest.properties");
+    private static boolean extracted;
+
     public void extractNativeFiles() {
+        synchronized (ScanditInstallerImpl.class) {
+            if (extracted) {
+                return;
+            }
+            extractNativeFilesImpl();
+            extracted = true;
+        }
+    }
+    
+    private void extractNativeFilesImpl() {
         try {
             File nativeDir = new File("native");
             File iosNative = new File(nativeDir, "ios");
@@ -28,22 +55,19 @@ public class ScanditInstallerImpl implements com.codename1.scandit.ScanditInstal
                 aarFilePresent = true;
             }
             if (frameworkFile.exists()) {
+                Properties manifest = loadManifest();
+                boolean changed = false;
                 File headersDir = new File(frameworkFile, "Headers");
-                for (File headerFile : headersDir.listFiles()) {
-                    File destHeaderFile = new File(iosNative, headerFile.getName());
-                    Log.p("Copying "+headerFile+" to "+destHeaderFile);
-                    try (FileInputStream fis = new FileInputStream(headerFile)) {
-                        try (FileOutputStream fos = new FileOutputStream(destHeaderFile)) {
-                            Util.copy(fis, fos);
-                        }
+                File[] headerFiles = headersDir.listFiles();
+                if (headerFiles != null) {
+                    for (File headerFile : headerFiles) {
+                        changed |= sync(headerFile, new File(iosNative, headerFile.getName()), manifest);
                     }
                 }
                 File frameworkBinaryFile = new File(frameworkFile, "ScanditBarcodeScanner");
-                Log.p("Copying "+frameworkBinaryFile+" to "+iosLibFile);
-                try (FileInputStream fis = new FileInputStream(frameworkBinaryFile)) {
-                    try (FileOutputStream fos = new FileOutputStream(iosLibFile)) {
-                        Util.copy(fis, fos);
-                    }
+                changed |= sync(frameworkBinaryFile, iosLibFile, manifest);
+                if (changed) {
+                    saveManifest(manifest);
                 }
                 Log.p("Deleting "+frameworkFile);
                 delete(frameworkFile);
@@ -85,6 +109,83 @@ public class ScanditInstallerImpl implements com.codename1.scandit.ScanditInstal
         }
     }
     
+    /**
+     * Copies a file unless the destination already has the same contents.  The hash is
+     * only computed when the size or modification time differ from the manifest, so an
+     * unchanged SDK costs a couple of stat calls per file.
+     * @return True if the manifest was changed.
+     */
+    private static boolean sync(File src, File dest, Properties manifest) throws IOException {
+        String key = dest.getName();
+        long size = src.length();
+        long modified = src.lastModified();
+        String[] entry = split(manifest.getProperty(key));
+        boolean destCurrent = entry != null && dest.exists() && dest.length() == size;
+        if (destCurrent && entry[0].equals(String.valueOf(size)) && entry[1].equals(String.valueOf(modified))) {
+            return false;
+        }
+        String hash = sha256(src);
+        if (destCurrent && entry[2].equals(hash)) {
+            // Same contents with a new timestamp, e.g. the SDK was unzipped again
+            manifest.setProperty(key, size+":"+modified+":"+hash);
+            return true;
+        }
+        Log.p("Copying "+src+" to "+dest);
+        Files.copy(src.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        manifest.setProperty(key, size+":"+modified+":"+hash);
+        return true;
+    }
+
+    private static String[] split(String entry) {
+        if (entry == null) {
+            return null;
+        }
+        String[] parts = entry.split(":");
+        return parts.length == 3 ? parts : null;
+    }
+
+    private static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+            while (channel.read(buf) != -1) {
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static Properties loadManifest() throws IOException {
+        Properties manifest = new Properties();
+        if (MANIFEST_FILE.exists()) {
+            try (InputStream in = Files.newInputStream(MANIFEST_FILE.toPath())) {
+                manifest.load(in);
+            }
+        }
+        return manifest;
+    }
+
+    private static void saveManifest(Properties manifest) throws IOException {
+        File dir = MANIFEST_FILE.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create "+dir);
+        }
+        try (OutputStream out = Files.newOutputStream(MANIFEST_FILE.toPath())) {
+            manifest.store(out, "Scandit SDK files extracted by cn1-codescan-scandit");
+        }
+    }
+
     private static void delete(File file) throws IOException {
 
         for (File childFile : file.listFiles()) {
@@ -0,0 +1,121 @@
+package com.codename1.scandit;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes frames with ZXing if it is on the classpath.  ZXing is accessed with
+ * reflection so that it is an optional dependency of the simulator.
+ */
+class ZXingCodeDecoder implements CodeDecoder {
+    private static final String[][] FORMATS = {
+        {"QR_CODE", "QR"},
+        {"DATA_MATRIX", "DATAMATRIX"},
+        {"PDF_417", "PDF417"},
+        {"AZTEC", "AZTEC"},
+        {"MAXICODE", "MAXICODE"},
+        {"EAN_13", "EAN13"},
+        {"EAN_8", "EAN8"},
+        {"UPC_A", "UPC12"},
+        {"UPC_E", "UPCE"},
+        {"CODE_39", "CODE39"},
+        {"CODE_93", "CODE93"},
+        {"CODE_128", "CODE128"},
+        {"ITF", "ITF"},
+        {"CODABAR", "CODABAR"},
+        {"RSS_14", "GS1DATABAR"},
+        {"RSS_EXPANDED", "GS1DATABAREXPANDED"}
+    };
+    private static final int[] SYMBOLOGIES = {
+        CodeScanner.SYMBOLOGY_QR,
+        CodeScanner.SYMBOLOGY_DATAMATRIX,
+        CodeScanner.SYMBOLOGY_PDF417,
+        CodeScanner.SYMBOLOGY_AZTEC,
+        CodeScanner.SYMBOLOGY_MAXICODE,
+        CodeScanner.SYMBOLOGY_EAN13,
+        CodeScanner.SYMBOLOGY_EAN8,
+        CodeScanner.SYMBOLOGY_UPC12,
+        CodeScanner.SYMBOLOGY_UPCE,
+        CodeScanner.SYMBOLOGY_CODE39,
+        CodeScanner.SYMBOLOGY_CODE93,
+        CodeScanner.SYMBOLOGY_CODE128,
+        CodeScanner.SYMBOLOGY_ITF,
+        CodeScanner.SYMBOLOGY_CODABAR,
+        CodeScanner.SYMBOLOGY_GS1DATABAR,
+        CodeScanner.SYMBOLOGY_GS1DATABAREXPANDED
+    };
+
+    private final Constructor<?> luminanceSource;
+    private final Constructor<?> binarizer;
+    private final Constructor<?> bitmap;
+    private final Object reader;
+    private final Method decode;
+    private final Method reset;
+    private final Method getText;
+    private final Method getRawBytes;
+    private final Method getBarcodeFormat;
+
+    private ZXingCodeDecoder() throws Exception {
+        Class<?> luminanceSourceClass = Class.forName("com.google.zxing.LuminanceSource");
+        Class<?> binarizerClass = Class.forName("com.google.zxing.Binarizer");
+        Class<?> bitmapClass = Class.forName("com.google.zxing.BinaryBitmap");
+        Class<?> readerClass = Class.forName("com.google.zxing.MultiFormatReader");
+        Class<?> resultClass = Class.forName("com.google.zxing.Result");
+        luminanceSource = Class.forName("com.google.zxing.RGBLuminanceSource").getConstructor(int.class, int.class, int[].class);
+        binarizer = Class.forName("com.google.zxing.common.HybridBinarizer").getConstructor(luminanceSourceClass);
+        bitmap = bitmapClass.getConstructor(binarizerClass);
+        reader = readerClass.getDeclaredConstructor().newInstance();
+        decode = readerClass.getMethod("decode", bitmapClass);
+        reset = readerClass.getMethod("reset");
+        getText = resultClass.getMethod("getText");
+        getRawBytes = resultClass.getMethod("getRawBytes");
+        getBarcodeFormat = resultClass.getMethod("getBarcodeFormat");
+    }
+
+    /**
+     * Creates a decoder.
+     * @return The decoder, or null if ZXing isn't on the classpath.
+     */
+    static ZXingCodeDecoder create() {
+        try {
+            return new ZXingCodeDecoder();
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    @Override
+    public List<ScannedCode> decode(int[] argb, int width, int height, int symbologyMask, int maxCodes) {
+        try {
+            Object source = luminanceSource.newInstance(width, height, argb);
+            Object image = bitmap.newInstance(binarizer.newInstance(source));
+            Object result;
+            try {
+                result = decode.invoke(reader, image);
+            } finally {
+                reset.invoke(reader);
+            }
+            String format = String.valueOf(getBarcodeFormat.invoke(result));
+            for (int i=0; i<FORMATS.length; i++) {
+                if (FORMATS[i][0].equals(format)) {
+                    if ((SYMBOLOGIES[i] & symbologyMask) == 0) {
+                        return null;
+                    }
+                    List<ScannedCode> out = new ArrayList<ScannedCode>(1);
+                    out.add(new ScannedCode((String)getText.invoke(result), FORMATS[i][1], (byte[])getRawBytes.invoke(result)));
+                    return out;
+                }
+            }
+            return null;
+        } catch (InvocationTargetException ex) {
+            // ZXing throws NotFoundException, ChecksumException or FormatException
+            // when there is no readable code in the frame.
+            return null;
+        } catch (Exception ex) {
+            throw new RuntimeException("ZXing decoding failed: "+ex.getMessage());
+        }
+    }
+}
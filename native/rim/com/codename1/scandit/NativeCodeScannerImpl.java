@@ -1,7 +1,36 @@
 package com.codename1.scandit;
 
 public class NativeCodeScannerImpl {
-    public void scan(int[] param) {
+    public void scan(int param, int param1) {
+    }
+
+    public void startSession(int param) {
+    }
+
+    public void stopSession() {
+    }
+
+    public void warmUp() {
+    }
+
+    public void releaseScanner() {
+    }
+
+    public com.codename1.ui.PeerComponent createScannerView(int param) {
+        return null;
+    }
+
+    public void startViewScanning(int param, int param1) {
+    }
+
+    public void stopViewScanning(int param) {
+    }
+
+    public void releaseScannerView(int param) {
+    }
+
+    public boolean isSupportKnown() {
+        return true;
     }
 
     public boolean isSupported() {
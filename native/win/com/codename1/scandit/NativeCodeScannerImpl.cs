@@ -2,7 +2,36 @@ namespace com.codename1.scandit{
 
 
 public class NativeCodeScannerImpl : INativeCodeScannerImpl {
-    public void scan(int[] param) {
+    public void scan(int param, int param1) {
+    }
+
+    public void startSession(int param) {
+    }
+
+    public void stopSession() {
+    }
+
+    public void warmUp() {
+    }
+
+    public void releaseScanner() {
+    }
+
+    public object createScannerView(int param) {
+        return null;
+    }
+
+    public void startViewScanning(int param, int param1) {
+    }
+
+    public void stopViewScanning(int param) {
+    }
+
+    public void releaseScannerView(int param) {
+    }
+
+    public bool isSupportKnown() {
+        return true;
     }
 
     public bool isSupported() {
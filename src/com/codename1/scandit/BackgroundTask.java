@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import com.codename1.io.Log;
+import com.codename1.ui.Display;
+import com.codename1.util.SuccessCallback;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A task that runs once, either on a background thread or on the first thread that 
+ * needs its result.  Callbacks and calls that arrive while the background thread is 
+ * running are queued and run on the EDT when it finishes.  Ones that arrive later are
+ * run right away with the same result.
+ *
+ * @author Steve Hannah
+ */
+abstract class BackgroundTask {
+    private static final int STATE_NEW = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_DONE = 2;
+    
+    private final String threadName;
+    private int state = STATE_NEW;
+    private boolean result;
+    private final List<Runnable> pendingCalls = new ArrayList<Runnable>();
+    private final List<SuccessCallback<Boolean>> callbacks = new ArrayList<SuccessCallback<Boolean>>();
+    private final List<SuccessCallback<String>> progressListeners = new ArrayList<SuccessCallback<String>>();
+    
+    BackgroundTask(String threadName) {
+        this.threadName = threadName;
+    }
+    
+    /**
+     * Does the work.  
+     * @param background True if this is called on the background thread, false if it is 
+     * called on a thread that needs the result right away.
+     * @return The result that is passed to the callbacks.
+     */
+    protected abstract boolean execute(boolean background);
+    
+    /**
+     * Called on the background thread, with the lock held, just before it starts.
+     */
+    protected void onStart() {
+        
+    }
+    
+    /**
+     * Starts the task on a background thread unless it was already started.
+     * @param progress Optional callback that is called on the EDT with a description of 
+     * each step, as it starts.
+     * @param callback Optional callback that is called on the EDT with the result.
+     */
+    void start(SuccessCallback<String> progress, final SuccessCallback<Boolean> callback) {
+        synchronized (this) {
+            if (state == STATE_DONE) {
+                if (callback != null) {
+                    final boolean r = result;
+                    Display.getInstance().callSerially(()->callback.onSucess(r));
+                }
+                return;
+            }
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            if (progress != null) {
+                progressListeners.add(progress);
+            }
+            if (state == STATE_RUNNING) {
+                return;
+            }
+            state = STATE_RUNNING;
+            onStart();
+        }
+        Display.getInstance().startThread(()->{
+            boolean r = false;
+            try {
+                r = execute(true);
+            } catch (Throwable t) {
+                Log.e(t);
+            }
+            final boolean done = r;
+            final List<Runnable> calls;
+            final List<SuccessCallback<Boolean>> cbs;
+            synchronized (this) {
+                result = done;
+                state = STATE_DONE;
+                calls = new ArrayList<Runnable>(pendingCalls);
+                cbs = new ArrayList<SuccessCallback<Boolean>>(callbacks);
+                pendingCalls.clear();
+                callbacks.clear();
+                progressListeners.clear();
+                notifyAll();
+            }
+            if (!cbs.isEmpty() || !calls.isEmpty()) {
+                Display.getInstance().callSerially(()->{
+                    for (SuccessCallback<Boolean> cb : cbs) {
+                        cb.onSucess(done);
+                    }
+                    for (Runnable call : calls) {
+                        call.run();
+                    }
+                });
+            }
+        }, threadName).start();
+    }
+    
+    /**
+     * Reports the step that the task is starting to the progress callbacks.  
+     * @param step A description of the step.
+     */
+    protected void progress(final String step) {
+        final List<SuccessCallback<String>> listeners;
+        synchronized (this) {
+            if (progressListeners.isEmpty()) {
+                return;
+            }
+            listeners = new ArrayList<SuccessCallback<String>>(progressListeners);
+        }
+        Display.getInstance().callSerially(()->{
+            for (SuccessCallback<String> l : listeners) {
+                l.onSucess(step);
+            }
+        });
+    }
+    
+    /**
+     * Gets the result, running the task on the current thread if it hasn't been started, 
+     * or waiting for the background thread if it is running.
+     * @return The result.
+     */
+    synchronized boolean get() {
+        if (state == STATE_NEW) {
+            try {
+                result = execute(false);
+            } finally {
+                state = STATE_DONE;
+                notifyAll();
+            }
+        }
+        while (state != STATE_DONE) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Log.e(ex);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Runs a call once the task is done.  If the task is running in the background,
+     * the call is queued and will be run on the EDT when it finishes.  Otherwise the 
+     * task is finished on the current thread if needed, and the call is run right away.
+     * @param r The call to run.
+     */
+    void whenDone(Runnable r) {
+        synchronized (this) {
+            if (state == STATE_RUNNING) {
+                pendingCalls.add(r);
+                return;
+            }
+        }
+        get();
+        r.run();
+    }
+    
+    /**
+     * Checks whether the task is done.
+     * @return True if the result is available without waiting.
+     */
+    synchronized boolean isDone() {
+        return state == STATE_DONE;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import java.util.List;
+
+/**
+ * A {@link ScanResult} that receives all of the codes recognized in a single camera
+ * frame at once.  Pass an implementation of this interface to 
+ * {@link CodeScanner#scan(java.util.Collection, com.codename1.scandit.ScanResult) } or
+ * {@link CodeScanner#startSession(java.util.Collection, com.codename1.scandit.ScanResult) }
+ * and set {@link CodeScanner#setMaxCodesPerFrame(int) } to scan labels that carry
+ * several codes in one go.
+ * 
+ * <p>When a listener implements this interface, {@link #scanBatchCompleted(java.util.List) } is
+ * called instead of {@link ScanResult#scanCompleted(java.lang.String, java.lang.String, byte[]) }.
+ * Like all methods of {@link ScanResult}, it will always be invoked on the EDT.</p>
+ *
+ * @author Steve Hannah
+ */
+public interface BatchScanResult extends ScanResult {
+    /**
+     * Called with all of the codes that were recognized in a single frame.
+     * 
+     * @param codes The codes that were recognized.  Never empty.
+     */
+    public void scanBatchCompleted(List<ScannedCode> codes);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import java.util.List;
+
+/**
+ * A software decoder that finds codes in a still image.  Software decoders are used
+ * where there is no native scanner, e.g. in the simulator and on desktop, where 
+ * frames come from image files instead of the camera.
+ * 
+ * <p>Set a decoder with {@link CodeScanner#setSoftwareDecoder(com.codename1.scandit.CodeDecoder) }
+ * to replace the default one.  The built in decoder handles EAN-13, UPC-A, EAN-8, 
+ * Code 128 and Code 39.</p>
+ *
+ * @author Steve Hannah
+ */
+public interface CodeDecoder {
+    /**
+     * Finds the codes in a frame.  This is called off the EDT.
+     * 
+     * @param argb The pixels of the frame in ARGB format, row by row.
+     * @param width The width of the frame.
+     * @param height The height of the frame.
+     * @param symbologyMask The symbologies to look for, OR'd together.
+     * @param maxCodes The maximum number of codes to return.
+     * @return The codes that were found, or null if there are none.
+     */
+    public List<ScannedCode> decode(int[] argb, int width, int height, int symbologyMask, int maxCodes);
+}
@@ -25,11 +25,14 @@ package com.codename1.scandit;
 import com.codename1.io.Log;
 import com.codename1.system.NativeLookup;
 import com.codename1.ui.Display;
+import com.codename1.ui.PeerComponent;
+import com.codename1.util.SuccessCallback;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Bar Code and QR Code scanner using the Scandit SDK
@@ -66,16 +69,42 @@ import java.util.TimerTask;
  * <p>Convenience methods exist for {@link #scanBarCode(com.codename1.scandit.ScanResult) } and {@link #scanQRCode(com.codename1.scandit.ScanResult) },
  * but you can also supply a specific list of the types of codes you want to scan via the {@link #scan(java.util.Collection, com.codename1.scandit.ScanResult) } method.
  * </p>
- * <p>There are static class constants for the available symbologies.</p>
+ * <p>There are static class constants for the available symbologies.  Since they are bit flags,
+ * they can also be combined into a mask and passed to {@link #scan(int, com.codename1.scandit.ScanResult) },
+ * or wrapped in a {@link SymbologySet}.</p>
+ * <p>The first scan loads the native scanner, which can take a moment.  Call 
+ * {@link #prepareAsync(com.codename1.util.SuccessCallback) } at startup to do this on a
+ * background thread instead.</p>
+ * <p>To scan many codes in a row without closing the scanner between codes, use 
+ * {@link #startSession(java.util.Collection, com.codename1.scandit.ScanResult) }.  To show
+ * the camera inside a form instead of in a separate window, use {@link ScannerView}.</p>
  *
  * @author Steve Hannah
  */
 public class CodeScanner {
-    private ScanResult callback;
+    private final ScanDispatcher dispatcher = new ScanDispatcher();
+    private final ResultQueue results = new ResultQueue(32);
+    // The fields that are read on the native scanner thread are volatile, since
+    // their setters run on the EDT
+    private volatile ScanSession session;
     private NativeCodeScanner nativeInstance;
     private IosCodeScanner iosInstance;
     private static CodeScanner instance;
     private static String licenseKey;
+    private int maxCodesPerFrame = 1;
+    private int payloadFormats = PAYLOAD_TEXT | PAYLOAD_RAW_BYTES;
+    private volatile DuplicateFilter duplicateFilter;
+    private volatile boolean gs1Parsing;
+    // Copied on write, since it is read on the native scanner thread
+    private volatile ScanFilter[] scanFilters = new ScanFilter[0];
+    private volatile ScanMetrics metrics;
+    private CodeDecoder softwareDecoder;
+    private ScanArea scanArea;
+    private ScanProfile profile = ScanProfile.DEFAULT;
+    // Replaced rather than modified, so natives can read it without locking
+    private HashMap<Integer, SymbologySettings> symbologySettings = new HashMap<Integer, SymbologySettings>();
+    private int settingsVersion;
+    private int lastViewId;
     static boolean debug;
     
     /**
@@ -86,6 +115,32 @@ public class CodeScanner {
         CodeScanner.debug = debug;
     }
     
+    /**
+     * Error code passed to {@link ScanResult#scanError(int, java.lang.String) } if a scan
+     * or session is started while another one is still in progress.
+     */
+    public static final int ERR_SCAN_IN_PROGRESS = IosCodeScanner.ERR_SCAN_IN_PROGRESS;
+    
+    /**
+     * Error code passed to {@link ScanResult#scanError(int, java.lang.String) } if the 
+     * native scanner couldn't be loaded on this device.
+     */
+    public static final int ERR_NOT_SUPPORTED = 2;
+    
+    /**
+     * Payload format flag for the decoded text of a code.  This is passed to 
+     * {@link ScanResult#scanCompleted(java.lang.String, java.lang.String, byte[]) } as {@literal contents}.
+     * @see #setPayloadFormats(int) 
+     */
+    public static final int PAYLOAD_TEXT = 1;
+    
+    /**
+     * Payload format flag for the raw bytes of a code.  This is passed to 
+     * {@link ScanResult#scanCompleted(java.lang.String, java.lang.String, byte[]) } as {@literal rawBytes}.
+     * @see #setPayloadFormats(int) 
+     */
+    public static final int PAYLOAD_RAW_BYTES = 2;
+    
     /**
      * \brief Sentinel value to represent an unknown symbology
      */
@@ -260,7 +315,36 @@ public class CodeScanner {
         }
     }
     
+    private final BackgroundTask preparation = new BackgroundTask("CodeScanner init") {
+        @Override
+        protected boolean execute(boolean background) {
+            initNative();
+            if (background) {
+                try {
+                    if (nativeInstance != null && nativeInstance.isSupported()) {
+                        nativeInstance.warmUp();
+                    }
+                } catch (Throwable t) {
+                    Log.e(t);
+                }
+            }
+            return isLoaded();
+        }
+    };
+    
     private CodeScanner() {
+        
+    }
+    
+    /**
+     * Loads the native scanner.  On iOS this sets the license and creates the picker,
+     * which must be done on the main thread, so this should not be called on the EDT
+     * if it can be avoided.
+     */
+    private void initNative() {
+        if (Display.getInstance().isSimulator()) {
+            extractNativeFiles();
+        }
         try {
             if (IosCodeScanner.isSupported()) {
                 iosInstance = new IosCodeScanner(licenseKey);
@@ -272,24 +356,108 @@ public class CodeScanner {
         }
     }
     
+    /**
+     * Makes sure that the native scanner is loaded, loading it on the current thread 
+     * if {@link #prepareAsync(com.codename1.util.SuccessCallback) } hasn't been called,
+     * or waiting for the background preparation to finish if it has.
+     */
+    private void ensureReady() {
+        preparation.get();
+    }
+    
+    /**
+     * Runs the given call once the native scanner is loaded.  If the scanner is being
+     * prepared in the background, the call is queued and will be run on the EDT when
+     * it is ready.  Otherwise it is run right away.
+     * @param r The call to run.
+     */
+    private void runWhenReady(Runnable r) {
+        preparation.whenDone(r);
+    }
+    
+    private boolean isLoaded() {
+        return iosInstance != null || (nativeInstance != null && nativeInstance.isSupported());
+    }
+    
+    /**
+     * Loads the native scanner and warms up the picker on a background thread, so that
+     * the first scan doesn't block the UI.  This is best called from the app's {@literal init()}
+     * method, after {@link #setLicenseKey(java.lang.String) }.
+     * 
+     * <p>Scans and sessions that are started before the scanner is ready are queued,
+     * and will start as soon as it is ready.  Calling this more than once is harmless.</p>
+     * 
+     * @param callback Optional callback that is called on the EDT when the scanner is ready.
+     * The value is true if the scanner was loaded, and false if it isn't available on this platform.
+     */
+    public static void prepareAsync(SuccessCallback<Boolean> callback) {
+        getInstance().preparation.start(null, callback);
+    }
+    
+    /**
+     * Checks whether the native scanner has been loaded, either by 
+     * {@link #prepareAsync(com.codename1.util.SuccessCallback) } or by the first scan.
+     * @return True if the scanner is ready to scan without delay.
+     */
+    public static boolean isReady() {
+        return getInstance().preparation.isDone();
+    }
+    
+    private static final BackgroundTask installation = new BackgroundTask("CodeScanner install") {
+        @Override
+        protected void onStart() {
+            Display.getInstance().setProperty("ShowScanditInstalledMessage", "true");
+        }
+        
+        @Override
+        protected boolean execute(boolean background) {
+            if (Display.getInstance().isSimulator()) {
+                progress("Extracting the Scandit SDK");
+                extractNativeFiles();
+            }
+            progress("Checking for scanner support");
+            return isSupported();
+        }
+    };
+    
     /**
      * Install the native components.
+     * @see #install(com.codename1.util.SuccessCallback) 
      */
     public static void install() {
-        Display.getInstance().setProperty("ShowScanditInstalledMessage", "true");
-        Timer timer = new Timer();
-        TimerTask tt = new TimerTask() {
-
-            @Override
-            public void run() {
-                Display.getInstance().callSerially(()->{
-                    CodeScanner.isSupported();
-                });
-            }
-            
-        };
-        timer.schedule(tt, 2000);
-        
+        install(null);
+    }
+    
+    /**
+     * Installs the native components on a background thread.  In the simulator this 
+     * extracts the Scandit SDK into the project's native directories, and then probes 
+     * whether scanning is supported.  Nothing is done on the EDT except for calling 
+     * the callback.
+     * 
+     * <p>The work is only done once.  Calling this again while it is running adds 
+     * the callback to the same installation, and calling it after it finished calls 
+     * the callback with the same result.</p>
+     * 
+     * @param callback Optional callback that is called on the EDT when the installation
+     * is complete, with the result of {@link #isSupported() }.
+     */
+    public static void install(SuccessCallback<Boolean> callback) {
+        install(null, callback);
+    }
+    
+    /**
+     * Installs the native components on a background thread, reporting each step as it 
+     * starts.  This is like {@link #install(com.codename1.util.SuccessCallback) }, but 
+     * lets the app show what is happening while the SDK is extracted in the simulator.
+     * 
+     * @param progress Optional callback that is called on the EDT with a short description 
+     * of each step, starting with the first one.  It isn't called if the installation 
+     * has already finished.
+     * @param callback Optional callback that is called on the EDT when the installation
+     * is complete, with the result of {@link #isSupported() }.
+     */
+    public static void install(SuccessCallback<String> progress, SuccessCallback<Boolean> callback) {
+        installation.start(progress, callback);
     }
     
     private static boolean cameraUsageDescriptionChecked;
@@ -308,17 +476,59 @@ public class CodeScanner {
     }
     
     
+    private static final int SUPPORT_UNKNOWN = 0;
+    private static final int SUPPORT_YES = 1;
+    private static final int SUPPORT_NO = 2;
+    private static int supported = SUPPORT_UNKNOWN;
+    
+    /**
+     * Checks whether scanning is supported on this device, i.e. that the Scandit SDK 
+     * is present and there is a camera.  The answer is worked out on the first call and
+     * cached, so this is cheap enough to call while rendering.  On Android, a call made 
+     * before there is an activity returns true, and isn't cached.  It doesn't load the 
+     * scanner; use {@link #prepareAsync(com.codename1.util.SuccessCallback) } for that.
+     * 
+     * @return True if codes can be scanned.  In the simulator this is true, since images 
+     * are scanned with the software decoder.
+     */
     public static boolean isSupported() {
+        int s = supported;
+        if (s == SUPPORT_UNKNOWN) {
+            s = probeSupported();
+            if (s == SUPPORT_UNKNOWN) {
+                return true;
+            }
+            supported = s;
+        }
+        return s == SUPPORT_YES;
+    }
+    
+    /**
+     * Works out whether scanning is supported.
+     * @return {@link #SUPPORT_YES}, {@link #SUPPORT_NO}, or {@link #SUPPORT_UNKNOWN} if 
+     * the platform can't tell yet.
+     */
+    private static int probeSupported() {
         if (Display.getInstance().isSimulator()) {
             checkCameraUsageDescription();
-            extractNativeFiles();
-            return false;
         }
-        if (IosCodeScanner.isSupported()) {
-            return true;
+        try {
+            if (IosCodeScanner.isSupported()) {
+                return IosCodeScanner.isScannerAvailable() ? SUPPORT_YES : SUPPORT_NO;
+            }
+            // Look up a separate instance, so this never waits for prepareAsync()
+            NativeCodeScanner probe = (NativeCodeScanner)NativeLookup.create(NativeCodeScanner.class);
+            if (probe == null) {
+                return SUPPORT_NO;
+            }
+            if (!probe.isSupportKnown()) {
+                return SUPPORT_UNKNOWN;
+            }
+            return probe.isSupported() ? SUPPORT_YES : SUPPORT_NO;
+        } catch (Throwable t) {
+            Log.e(t);
+            return SUPPORT_NO;
         }
-        getInstance();
-        return instance.nativeInstance != null && instance.nativeInstance.isSupported();
     }
     
     /**
@@ -355,18 +565,775 @@ public class CodeScanner {
      * @param callback Callback to handle the scanning result.
      */
     public void scan(Collection<Integer> symbologies, ScanResult callback) {
+        scan(SymbologySet.toMask(symbologies), callback);
+    }
+    
+    /**
+     * Opens up a scanning window to allow the user to scan a single code in the 
+     * specified symbologies.
+     * @param symbologies The symbologies to use.
+     * @param callback Callback to handle the scanning result.
+     */
+    public void scan(SymbologySet symbologies, ScanResult callback) {
+        scan(symbologies.getMask(), callback);
+    }
+    
+    /**
+     * Opens up a scanning window to allow the user to scan a single code in the 
+     * specified symbologies.
+     * 
+     * <p>There is only one camera, so only one scan can be open at a time.  A scan that
+     * is started while another scan or a session is open receives a 
+     * {@link #ERR_SCAN_IN_PROGRESS} error.  A new scan can be started from the listener 
+     * of the previous one.  If the scanner isn't available on this device, the callback
+     * receives a {@link #ERR_NOT_SUPPORTED} error.</p>
+     * 
+     * @param symbologyMask The symbologies to use, OR'd together.  E.g. {@literal SYMBOLOGY_EAN13 | SYMBOLOGY_QR}
+     * @param callback Callback to handle the scanning result.
+     */
+    public void scan(final int symbologyMask, final ScanResult callback) {
+        if ((session != null && session.isActive()) || dispatcher.hasPending()) {
+            Log.p("Scanning is currently in progress");
+            if (callback != null) {
+                Display.getInstance().callSerially(()->callback.scanError(ERR_SCAN_IN_PROGRESS, "Scan already in progress"));
+            }
+            return;
+        }
+        markPhase(ScanMetrics.PHASE_REQUESTED);
+        final int token = dispatcher.register(callback);
+        runWhenReady(()->{
+            if (!isLoaded()) {
+                // Take the token, so that it doesn't block later scans
+                scanErrorCallback(token, ERR_NOT_SUPPORTED, "Scanner not available");
+                return;
+            }
+            try {
+                if (IosCodeScanner.isSupported()) {
+                    iosInstance.scan(token, symbologyMask, maxCodesPerFrame);
+                    return;
+                }
+                nativeInstance.scan(token, symbologyMask);
+            } catch (Throwable t) {
+                Log.e(t);
+                scanErrorCallback(token, 0, t.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Opens up a scanning window that stays open and passes every recognized code
+     * to the listener until the session is stopped with {@link ScanSession#stop() }, or
+     * the user cancels it.  This avoids the cost of opening and closing the camera
+     * for every code when many codes are scanned in a row.
+     * 
+     * <p>Only one session can be running at a time.  If another session or a single 
+     * scan is already running, the listener will receive a {@link #ERR_SCAN_IN_PROGRESS} 
+     * error and this will return null.</p>
+     * 
+     * @param symbologies The symbologies to use.  See class constants {@literal SYMBOLOGY_XXX}
+     * @param listener Callback that receives each scanned code.
+     * @return The session, or null if the session could not be started.
+     */
+    public ScanSession startSession(Collection<Integer> symbologies, ScanResult listener) {
+        return startSession(SymbologySet.toMask(symbologies), listener);
+    }
+    
+    /**
+     * Opens up a scanning window that stays open and passes every recognized code
+     * to the listener until the session is stopped.
+     * @param symbologies The symbologies to use.
+     * @param listener Callback that receives each scanned code.
+     * @return The session, or null if the session could not be started.
+     * @see #startSession(java.util.Collection, com.codename1.scandit.ScanResult) 
+     */
+    public ScanSession startSession(SymbologySet symbologies, ScanResult listener) {
+        return startSession(symbologies.getMask(), listener);
+    }
+    
+    /**
+     * Opens up a scanning window that stays open and passes every recognized code
+     * to the listener until the session is stopped.
+     * @param symbologyMask The symbologies to use, OR'd together.  E.g. {@literal SYMBOLOGY_EAN13 | SYMBOLOGY_QR}
+     * @param listener Callback that receives each scanned code.
+     * @return The session, or null if the session could not be started.
+     * @see #startSession(java.util.Collection, com.codename1.scandit.ScanResult) 
+     */
+    public ScanSession startSession(final int symbologyMask, final ScanResult listener) {
+        if ((session != null && session.isActive()) || dispatcher.hasPending()) {
+            Log.p("Scanning session is currently in progress");
+            Display.getInstance().callSerially(()->listener.scanError(ERR_SCAN_IN_PROGRESS, "Scan already in progress"));
+            return null;
+        }
+        final ScanSession out = new ScanSession(listener);
+        if (duplicateFilter != null) {
+            duplicateFilter.clear();
+        }
+        session = out;
+        markPhase(ScanMetrics.PHASE_REQUESTED);
+        runWhenReady(()->{
+            if (!out.isActive()) {
+                // Stopped before the scanner was ready
+                return;
+            }
+            if (!isLoaded()) {
+                scanErrorCallback(ScanDispatcher.SESSION_TOKEN, ERR_NOT_SUPPORTED, "Scanner not available");
+                if (session == out) {
+                    session = null;
+                }
+                out.setActive(false);
+                return;
+            }
+            if (IosCodeScanner.isSupported()) {
+                if (!iosInstance.startSession(symbologyMask, maxCodesPerFrame)) {
+                    if (session == out) {
+                        session = null;
+                    }
+                    out.setActive(false);
+                    Display.getInstance().callSerially(()->listener.scanError(ERR_SCAN_IN_PROGRESS, "Scan already in progress"));
+                }
+            } else {
+                nativeInstance.startSession(symbologyMask);
+            }
+        });
+        return out;
+    }
+    
+    /**
+     * Stops the given session and closes the scanner.
+     * @param s The session to stop.
+     */
+    void stopSession(ScanSession s) {
+        if (s != session || !s.isActive()) {
+            return;
+        }
+        s.setActive(false);
+        session = null;
+        if (s.isReplay()) {
+            return;
+        }
+        runWhenReady(()->{
+            if (IosCodeScanner.isSupported()) {
+                if (s.isEmbedded()) {
+                    iosInstance.stopViewScanning(s.getViewId());
+                } else {
+                    iosInstance.stopSession();
+                }
+            } else {
+                if (s.isEmbedded()) {
+                    nativeInstance.stopViewScanning(s.getViewId());
+                } else {
+                    nativeInstance.stopSession();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Allocates the ID of a new {@link ScannerView}, which identifies its native picker.
+     * @return The ID, which is never 0.
+     */
+    synchronized int nextViewId() {
+        return ++lastViewId;
+    }
+    
+    /**
+     * Creates the native peer for a {@link ScannerView}.  Each view gets its own picker,
+     * which is kept until {@link #releaseScannerPeer(int) } is called.  The peer has to 
+     * be created right away, so {@link ScannerView} only calls this once 
+     * {@link #isReady() } is true.  Otherwise it would wait for the scanner to load.
+     * @param viewId The ID of the view.
+     * @return The peer, or null if embedded scanning isn't supported on this platform.
+     */
+    PeerComponent createScannerPeer(int viewId) {
+        ensureReady();
+        if (IosCodeScanner.isSupported()) {
+            return iosInstance == null ? null : iosInstance.createScannerPeer(viewId);
+        }
+        if (nativeInstance == null || !nativeInstance.isSupported()) {
+            return null;
+        }
+        return nativeInstance.createScannerView(viewId);
+    }
+    
+    /**
+     * Releases the picker of a {@link ScannerView}, created by {@link #createScannerPeer(int) }.
+     * @param viewId The ID of the view.
+     */
+    void releaseScannerPeer(final int viewId) {
+        if (session != null && session.getViewId() == viewId) {
+            session.stop();
+        }
+        runWhenReady(()->{
+            if (IosCodeScanner.isSupported()) {
+                if (iosInstance != null) {
+                    iosInstance.releaseScannerPeer(viewId);
+                }
+            } else if (nativeInstance != null) {
+                nativeInstance.releaseScannerView(viewId);
+            }
+        });
+    }
+    
+    /**
+     * Starts a session that scans in the peer created by {@link #createScannerPeer(int) }
+     * instead of opening a scanning window.
+     * 
+     * @param viewId The ID of the view.
+     * @param symbologyMask The symbologies to use.
+     * @param listener Callback that receives each scanned code.
+     * @return The session, or null if another session or a single scan is already running.
+     */
+    ScanSession startViewSession(final int viewId, final int symbologyMask, final ScanResult listener) {
+        if ((session != null && session.isActive()) || dispatcher.hasPending()) {
+            Log.p("Scanning session is currently in progress");
+            Display.getInstance().callSerially(()->listener.scanError(ERR_SCAN_IN_PROGRESS, "Scan already in progress"));
+            return null;
+        }
+        final ScanSession out = new ScanSession(listener);
+        out.setViewId(viewId);
+        if (duplicateFilter != null) {
+            duplicateFilter.clear();
+        }
+        session = out;
+        markPhase(ScanMetrics.PHASE_REQUESTED);
+        runWhenReady(()->{
+            if (!out.isActive()) {
+                return;
+            }
+            if (IosCodeScanner.isSupported()) {
+                iosInstance.startViewScanning(viewId, symbologyMask, maxCodesPerFrame);
+            } else {
+                nativeInstance.startViewScanning(viewId, symbologyMask);
+            }
+        });
+        return out;
+    }
+    
+    /**
+     * Starts a session that is fed by a {@link ScanReplay} instead of the camera.  The
+     * session goes through the same duplicate filter and delivery as a native session.
+     * 
+     * @param listener Callback that receives each scanned code.
+     * @return The session, or null if another session or scan is already running.
+     */
+    ScanSession startReplaySession(ScanResult listener) {
+        if ((session != null && session.isActive()) || dispatcher.hasPending()) {
+            Log.p("Scanning is currently in progress");
+            Display.getInstance().callSerially(()->listener.scanError(ERR_SCAN_IN_PROGRESS, "Scan already in progress"));
+            return null;
+        }
+        ScanSession out = new ScanSession(listener);
+        out.setReplay(true);
+        if (duplicateFilter != null) {
+            duplicateFilter.clear();
+        }
+        session = out;
+        markPhase(ScanMetrics.PHASE_REQUESTED);
+        return out;
+    }
+    
+    /**
+     * Registers a single scan that is answered by a {@link ScanReplay} instead of the 
+     * camera.
+     * 
+     * @param listener Callback to handle the scanning result.
+     * @return The token to report the result with, or -1 if a scan or session is 
+     * already running.
+     */
+    int registerReplayScan(ScanResult listener) {
+        if ((session != null && session.isActive()) || dispatcher.hasPending()) {
+            Log.p("Scanning is currently in progress");
+            if (listener != null) {
+                Display.getInstance().callSerially(()->listener.scanError(ERR_SCAN_IN_PROGRESS, "Scan already in progress"));
+            }
+            return -1;
+        }
+        markPhase(ScanMetrics.PHASE_REQUESTED);
+        return dispatcher.register(listener);
+    }
+    
+    /**
+     * Sets the maximum number of codes that will be recognized in a single camera frame.
+     * The default is 1.  Use a higher value with a {@link BatchScanResult} listener to
+     * receive all of the codes on a label with multiple codes in a single callback.
+     * 
+     * <p>This takes effect on the next call to {@link #scan(java.util.Collection, com.codename1.scandit.ScanResult) } 
+     * or {@link #startSession(java.util.Collection, com.codename1.scandit.ScanResult) }.</p>
+     * 
+     * @param max The maximum number of codes per frame.  Must be at least 1.
+     */
+    public void setMaxCodesPerFrame(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("maxCodesPerFrame must be at least 1");
+        }
+        this.maxCodesPerFrame = max;
+    }
+    
+    /**
+     * Gets the maximum number of codes that will be recognized in a single camera frame.
+     * @return The maximum number of codes per frame.
+     */
+    public int getMaxCodesPerFrame() {
+        return maxCodesPerFrame;
+    }
+    
+    /**
+     * Sets which payloads are read from each recognized code.  By default both the
+     * text and the raw bytes are delivered.  Apps that only use the text can pass 
+     * {@link #PAYLOAD_TEXT} to skip copying the raw bytes, and apps that only use 
+     * binary payloads (e.g. GS1 or binary DataMatrix/PDF417) can pass {@link #PAYLOAD_RAW_BYTES}
+     * to skip decoding the text, in which case {@literal contents} will be null.
+     * 
+     * <p>This takes effect on the next scan or session.</p>
+     * 
+     * @param formats {@link #PAYLOAD_TEXT}, {@link #PAYLOAD_RAW_BYTES} or both OR'd together.
+     */
+    public void setPayloadFormats(int formats) {
+        if ((formats & (PAYLOAD_TEXT | PAYLOAD_RAW_BYTES)) == 0) {
+            throw new IllegalArgumentException("At least one payload format must be enabled");
+        }
+        this.payloadFormats = formats;
+    }
+    
+    /**
+     * Gets which payloads are read from each recognized code.
+     * @return The payload formats.
+     * @see #setPayloadFormats(int) 
+     */
+    public int getPayloadFormats() {
+        return payloadFormats;
+    }
+    
+    /**
+     * Restricts scanning to part of the camera frame.  Decoding is faster when the engine
+     * only has to search part of each frame, so this is worth setting on low-end devices
+     * when users are expected to aim at the code.
+     * 
+     * <p>By default the area of the {@link #setProfile(com.codename1.scandit.ScanProfile) profile}
+     * is used.  If that isn't set either, the whole frame is searched, except for single 
+     * scans on Android, which search a thin band around the center.  This takes effect 
+     * on the next scan or session.</p>
+     * 
+     * @param area The area to scan, or null for the platform default.
+     * @throws IllegalArgumentException On iOS, if the Scandit SDK doesn't accept the area.
+     */
+    public void setScanArea(ScanArea area) {
+        if (area == null ? scanArea != null : !area.equals(scanArea)) {
+            IosCodeScanner.validateScanArea(area);
+            scanArea = area;
+            settingsVersion++;
+        }
+    }
+    
+    /**
+     * Gets the area of the camera frame that is scanned.
+     * @return The area, or null if the platform default is used.
+     * @see #setScanArea(com.codename1.scandit.ScanArea) 
+     */
+    public ScanArea getScanArea() {
+        return scanArea;
+    }
+    
+    /**
+     * Gets the scanning area that natives should apply: the area set with 
+     * {@link #setScanArea(com.codename1.scandit.ScanArea) }, or the profile's area.
+     */
+    ScanArea getActiveScanArea() {
+        ScanArea a = scanArea;
+        return a != null ? a : profile.getScanArea();
+    }
+    
+    /**
+     * Sets the camera and recognition profile, e.g. {@link ScanProfile#LOW_POWER} for 
+     * all-day scanning or {@link ScanProfile#HIGH_SPEED} for fast moving codes.  This 
+     * takes effect on the next scan or session.
+     * @param profile The profile, or null for {@link ScanProfile#DEFAULT}.
+     * @throws IllegalArgumentException On iOS, if the Scandit SDK doesn't accept the 
+     * profile's scanning area.
+     */
+    public void setProfile(ScanProfile profile) {
+        if (profile == null) {
+            profile = ScanProfile.DEFAULT;
+        }
+        if (!profile.equals(this.profile)) {
+            IosCodeScanner.validateScanArea(profile.getScanArea());
+            this.profile = profile;
+            settingsVersion++;
+        }
+    }
+    
+    /**
+     * Gets the camera and recognition profile.
+     * @return The profile.  Never null.
+     * @see #setProfile(com.codename1.scandit.ScanProfile) 
+     */
+    public ScanProfile getProfile() {
+        return profile;
+    }
+    
+    /**
+     * Sets the recognition settings for a symbology, e.g. to restrict it to the code 
+     * lengths that are in use.  The settings are applied whenever the symbology is enabled, 
+     * starting with the next scan or session.  Any previous settings for the same 
+     * symbology are replaced.
+     * @param settings The settings.
+     */
+    public void setSymbologySettings(SymbologySettings settings) {
+        Integer key = settings.getSymbology();
+        if (settings.equals(symbologySettings.get(key))) {
+            return;
+        }
+        HashMap<Integer, SymbologySettings> m = new HashMap<Integer, SymbologySettings>(symbologySettings);
+        m.put(key, settings);
+        symbologySettings = m;
+        settingsVersion++;
+    }
+    
+    /**
+     * Gets the recognition settings for a symbology.
+     * @param symbology One of the {@literal SYMBOLOGY_XXX} constants.
+     * @return The settings, or null if the engine's defaults are used.
+     */
+    public SymbologySettings getSymbologySettings(int symbology) {
+        return symbologySettings.get(symbology);
+    }
+    
+    /**
+     * Removes the recognition settings of all symbologies, so that the engine's 
+     * defaults are used.
+     */
+    public void clearSymbologySettings() {
+        if (!symbologySettings.isEmpty()) {
+            symbologySettings = new HashMap<Integer, SymbologySettings>();
+            settingsVersion++;
+        }
+    }
+    
+    /**
+     * Gets a number that changes whenever a setting that is applied to the native picker
+     * changes, so that natives can tell when their cached settings are stale.
+     */
+    int getSettingsVersion() {
+        return settingsVersion;
+    }
+    
+    /**
+     * Wraps a listener so that it receives results on an executor instead of the EDT.
+     * Results are handed to the executor directly from the scanner's callback thread, 
+     * so listeners that only store or post-process codes (e.g. queue them, write them to
+     * a database, or parse them) never compete with rendering.  The listener must not 
+     * touch the UI without going through {@link Display#callSerially(java.lang.Runnable) }.
+     * 
+     * <pre>{@code
+     * EasyThread worker = EasyThread.start("scans");
+     * CodeScanner.getInstance().startSession(LABELS, CodeScanner.onExecutor(listener, worker::run));
+     * }</pre>
+     * 
+     * <p>Such listeners bypass the {@link #setDeliveryWindow(int) delivery window}.</p>
+     * 
+     * @param listener The listener.
+     * @param executor The executor to deliver results on.  If null, results are delivered
+     * on the scanner's callback thread, in which case the listener must return quickly.
+     * @return The wrapped listener, to pass to {@link #scan(int, com.codename1.scandit.ScanResult) }
+     * or {@link #startSession(int, com.codename1.scandit.ScanResult) }.
+     */
+    public static ScanResult onExecutor(ScanResult listener, ScanExecutor executor) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener can't be null");
+        }
+        return new ExecutorScanResult(listener, executor);
+    }
+    
+    /**
+     * Sets how long session results may be held back so that results arriving close 
+     * together are delivered in a single EDT call.  Consecutive results of a session 
+     * within the window are merged into one batch, so a {@link BatchScanResult} listener 
+     * receives them in a single {@link BatchScanResult#scanBatchCompleted(java.util.List) }
+     * call.  Values of 16-50ms keep high-rate scanning from flooding the EDT without a 
+     * noticeable delay.
+     * 
+     * <p>Results of single scans, cancellations and errors are never held back.  The
+     * default is 0, which delivers every result right away.</p>
+     * 
+     * @param millis The window in milliseconds, or 0 to disable coalescing.
+     */
+    public void setDeliveryWindow(int millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Delivery window can't be negative");
+        }
+        results.setWindow(millis);
+    }
+    
+    /**
+     * Gets how long session results may be held back to be delivered together.
+     * @return The window in milliseconds, or 0 if results are delivered right away.
+     * @see #setDeliveryWindow(int) 
+     */
+    public int getDeliveryWindow() {
+        return results.getWindow();
+    }
+    
+    /**
+     * Sets whether the current form is revalidated and repainted after the listener of
+     * a single scan is called.  This is off by default, since it lays out the whole form.
+     * Apps that update the UI from the listener should revalidate the containers they 
+     * changed instead, but can turn this on to get the old behavior.
+     * @param refresh True to revalidate and repaint the current form after each single
+     * scan result, cancellation or error.
+     */
+    public void setRefreshFormOnResult(boolean refresh) {
+        results.setRefreshForm(refresh);
+    }
+    
+    /**
+     * Checks whether the current form is revalidated and repainted after each single scan.
+     * @return True if the form is refreshed.
+     * @see #setRefreshFormOnResult(boolean) 
+     */
+    public boolean isRefreshFormOnResult() {
+        return results.isRefreshForm();
+    }
+    
+    /**
+     * Adds a filter that decides which recognized codes are delivered.  Filters run on
+     * the native scanner thread in the order they were added, and a code is only 
+     * delivered if every filter accepts it.  Rejected codes never reach the EDT, and a 
+     * single scan keeps the camera open until a code is accepted.  This applies to 
+     * single scans, sessions and {@link ScannerView}s.
+     * @param filter The filter.
+     * @see ScanFilters
+     */
+    public synchronized void addScanFilter(ScanFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter can't be null");
+        }
+        ScanFilter[] f = scanFilters;
+        ScanFilter[] out = new ScanFilter[f.length + 1];
+        System.arraycopy(f, 0, out, 0, f.length);
+        out[f.length] = filter;
+        scanFilters = out;
+    }
+    
+    /**
+     * Removes a filter that was added with {@link #addScanFilter(com.codename1.scandit.ScanFilter) }.
+     * @param filter The filter.
+     */
+    public synchronized void removeScanFilter(ScanFilter filter) {
+        ScanFilter[] f = scanFilters;
+        for (int i=0; i<f.length; i++) {
+            if (f[i] == filter) {
+                ScanFilter[] out = new ScanFilter[f.length - 1];
+                System.arraycopy(f, 0, out, 0, i);
+                System.arraycopy(f, i + 1, out, i, f.length - i - 1);
+                scanFilters = out;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Removes all scan filters.
+     */
+    public void clearScanFilters() {
+        scanFilters = new ScanFilter[0];
+    }
+    
+    /**
+     * Sets whether codes are parsed as GS1 element strings before they are delivered.
+     * Parsing then happens on the scanner thread instead of in the listener, and 
+     * {@link ScannedCode#getGs1Data() } returns right away.  Codes that are not GS1
+     * element strings are still delivered.
+     * @param parse True to parse codes before they are delivered.
+     * @see Gs1Parser
+     */
+    public void setGs1Parsing(boolean parse) {
+        gs1Parsing = parse;
+    }
+    
+    /**
+     * Checks whether codes are parsed as GS1 element strings before they are delivered.
+     * @return True if codes are parsed.
+     * @see #setGs1Parsing(boolean) 
+     */
+    public boolean isGs1Parsing() {
+        return gs1Parsing;
+    }
+    
+    /**
+     * Enables duplicate suppression for scan sessions.  When a code is recognized again
+     * less than {@literal windowMillis} after it was last delivered, it is dropped before 
+     * it reaches the listener.  This is useful in sessions, where the same code is 
+     * usually recognized in many frames in a row.
+     * 
+     * <p>The filter remembers at most {@literal cacheSize} of the most recently seen codes.
+     * The filter is cleared when a new session is started.  Single scans with 
+     * {@link #scan(java.util.Collection, com.codename1.scandit.ScanResult) } are never filtered.</p>
+     * 
+     * @param windowMillis The time in milliseconds during which a code is considered a 
+     * duplicate.  Use 0 to disable the filter.
+     * @param cacheSize The maximum number of codes to remember.
+     */
+    public void setDuplicateFilter(int windowMillis, int cacheSize) {
+        if (windowMillis <= 0) {
+            duplicateFilter = null;
+            return;
+        }
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cacheSize must be at least 1");
+        }
+        duplicateFilter = new DuplicateFilter(windowMillis, cacheSize);
+    }
+    
+    /**
+     * Gets the duplicate filter window.
+     * @return The time in milliseconds during which a code is considered a duplicate,
+     * or 0 if duplicate suppression is disabled.
+     * @see #setDuplicateFilter(int, int) 
+     */
+    public int getDuplicateFilterWindow() {
+        DuplicateFilter f = duplicateFilter;
+        return f == null ? 0 : f.getWindowMillis();
+    }
+    
+    /**
+     * Prepares the scanner ahead of the first scan so that opening the camera is fast.
+     * On Android this creates the embedded barcode picker and initializes the 
+     * recognition engine.  The picker is then reused for every scan until 
+     * {@link #release() } is called.
+     */
+    public void warmUp() {
         if (IosCodeScanner.isSupported()) {
-            iosInstance.scan(symbologies, callback);
+            // The iOS picker is created when the scanner is loaded and is always reused.
+            runWhenReady(()->{});
             return;
         }
-        this.callback = callback;
-        int[] l = new int[symbologies.size()];
-        int i=0;
-        for (int sym : symbologies) {
-            l[i] = sym;
-            i++;
+        runWhenReady(()->{
+            if (nativeInstance != null) {
+                nativeInstance.warmUp();
+            }
+        });
+    }
+    
+    /**
+     * Releases the resources held by the scanner.  The next scan will need to 
+     * create the picker again.  Any scan or session in progress is closed.
+     */
+    public void release() {
+        if (session != null) {
+            session.stop();
+        }
+        final List<ScanResult> canceled = dispatcher.takeAll();
+        if (!canceled.isEmpty()) {
+            Display.getInstance().callSerially(()->{
+                for (ScanResult l : canceled) {
+                    if (l != null) {
+                        l.scanCanceled();
+                    }
+                }
+            });
+        }
+        if (IosCodeScanner.isSupported()) {
+            return;
+        }
+        runWhenReady(()->{
+            if (nativeInstance != null) {
+                nativeInstance.releaseScanner();
+            }
+        });
+    }
+    
+    /**
+     * Sets the decoder that is used on platforms without a native scanner, i.e. the 
+     * simulator and desktop.  There, frames are read from image files instead of the camera.
+     * The image file or folder of images can be set with the {@literal cn1.scandit.frames} 
+     * system property.  Otherwise the user is asked to pick an image file.
+     * 
+     * <p>By default, ZXing is used if it is on the classpath, followed by a built in 
+     * decoder for EAN-13, UPC-A, EAN-8, Code 128 and Code 39.  QR and the other 2D 
+     * symbologies are only decoded when ZXing is on the classpath.</p>
+     * 
+     * @param decoder The decoder, or null to use the default.
+     */
+    public void setSoftwareDecoder(CodeDecoder decoder) {
+        this.softwareDecoder = decoder;
+    }
+    
+    /**
+     * Gets the decoder that was set with {@link #setSoftwareDecoder(com.codename1.scandit.CodeDecoder) }.
+     * @return The decoder, or null if the default is used.
+     */
+    public CodeDecoder getSoftwareDecoder() {
+        return softwareDecoder;
+    }
+    
+    /**
+     * Turns latency and count metrics on or off.  Turning metrics on starts with 
+     * empty metrics.
+     * @param enabled True to record metrics.
+     * @see ScanMetrics
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (enabled == (metrics != null)) {
+            return;
         }
-        nativeInstance.scan(l);
+        metrics = enabled ? new ScanMetrics() : null;
+    }
+    
+    /**
+     * Checks whether metrics are being recorded.
+     * @return True if metrics are enabled.
+     */
+    public boolean isMetricsEnabled() {
+        return metrics != null;
+    }
+    
+    /**
+     * Gets a snapshot of the scan metrics.
+     * @return The metrics so far, or null if metrics aren't enabled.
+     * @see #setMetricsEnabled(boolean) 
+     */
+    public ScanMetrics getMetrics() {
+        ScanMetrics m = metrics;
+        return m == null ? null : m.snapshot();
+    }
+    
+    /**
+     * Clears the metrics recorded so far.
+     */
+    public void resetMetrics() {
+        if (metrics != null) {
+            metrics = new ScanMetrics();
+        }
+    }
+    
+    /**
+     * Records the time of a scan phase if metrics are enabled.  This is called by the 
+     * native scanners.
+     * @param phase One of the {@literal ScanMetrics.PHASE_XXX} constants.
+     */
+    static void markPhase(int phase) {
+        ScanMetrics m = getInstance().metrics;
+        if (m != null) {
+            m.mark(phase);
+        }
+    }
+    
+    /**
+     * Counts a result that was held back until the picker finished animating in.
+     */
+    static void countModalBuffered() {
+        ScanMetrics m = getInstance().metrics;
+        if (m != null) {
+            m.modalBuffered();
+        }
+    }
+    
+    /**
+     * Gets the currently running scan session.
+     * @return The current session, or null if no session is running.
+     */
+    public ScanSession getCurrentSession() {
+        return session;
     }
     
         
@@ -376,7 +1343,7 @@ public class CodeScanner {
      * @param callback scan results
      */
     public void scanQRCode(ScanResult callback) {
-        scan(createSymbologySet(SYMBOLOGY_QR), callback);
+        scan(SYMBOLOGY_QR, callback);
     }
         
     /**
@@ -385,71 +1352,214 @@ public class CodeScanner {
      * @param callback scan results
      */
     public void scanBarCode(ScanResult callback) {
-        scan(createSymbologySet( SYMBOLOGY_EAN13 ,
-                                 SYMBOLOGY_UPC12,
-                                 SYMBOLOGY_EAN8,
-                                 SYMBOLOGY_UPCE,
-                                 SYMBOLOGY_CODE39 ,
-                                 SYMBOLOGY_CODE128,
-                                 SYMBOLOGY_ITF,
-                                 SYMBOLOGY_DATAMATRIX),
-                callback);
+        scan(SymbologySet.BAR_CODES, callback);
     }
     
     
     /**
      * Called upon a successful scan operation
      * 
+     * @param requestId the token of the scan, or 0 for the current session
      * @param contents the contents of the data
      * @param formatName the format of the scan
      * @param rawBytes the bytes of data
      */
-    static void scanCompletedCallback(final String contents, final String formatName, final byte[] rawBytes) {
-        if (getInstance().callback != null) {
-            Display.getInstance().callSerially(new Runnable() {
-                public void run() {
-                    getInstance().callback.scanCompleted(contents, formatName, rawBytes);
-                    getInstance().callback = null;
-                    Display.getInstance().getCurrent().revalidate();
-                    Display.getInstance().getCurrent().repaint();
+    static void scanCompletedCallback(int requestId, final String contents, final String formatName, final byte[] rawBytes) {
+        List<ScannedCode> codes = new ArrayList<ScannedCode>(1);
+        codes.add(new ScannedCode(contents, formatName, rawBytes));
+        scanBatchCompletedCallback(requestId, codes);
+    }
+    
+    /**
+     * Runs the scan filters on the codes of a frame.  The native scanners call this on 
+     * their own thread as soon as codes are recognized, before a single scan is 
+     * finished, so that the scan can go on if every code is rejected.
+     * @param codes The codes that were recognized.
+     * @return The accepted codes, which is the same list if every code was accepted,
+     * or null if every code was rejected.
+     */
+    static List<ScannedCode> filterCodes(List<ScannedCode> codes) {
+        CodeScanner scanner = getInstance();
+        ScanFilter[] filters = scanner.scanFilters;
+        if (filters.length == 0 || codes == null) {
+            return codes;
+        }
+        List<ScannedCode> out = codes;
+        int len = codes.size();
+        for (int i=0; i<len; i++) {
+            ScannedCode code = codes.get(i);
+            boolean accepted = accept(filters, code);
+            if (!accepted && out == codes) {
+                // Only copy once something is rejected
+                out = new ArrayList<ScannedCode>(len - 1);
+                for (int j=0; j<i; j++) {
+                    out.add(codes.get(j));
+                }
+            } else if (accepted && out != codes) {
+                out.add(code);
+            }
+        }
+        int rejected = len - out.size();
+        ScanMetrics m = scanner.metrics;
+        if (rejected > 0 && m != null) {
+            m.rejected(rejected);
+        }
+        return out.isEmpty() ? null : out;
+    }
+    
+    private static boolean accept(ScanFilter[] filters, ScannedCode code) {
+        for (int i=0; i<filters.length; i++) {
+            try {
+                if (!filters[i].accept(code)) {
+                    return false;
                 }
-            }); 
+            } catch (Throwable t) {
+                // Nothing above the native scanner thread would handle it
+                Log.e(t);
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Called with all of the codes that were recognized in a single frame.  The whole 
+     * batch is delivered to the listener in a single EDT call.
+     * 
+     * <p>The listener is resolved from the request token on the calling thread, before 
+     * the EDT call is queued, so a scan that is started while the result is waiting 
+     * for the EDT can't steal it.</p>
+     * 
+     * @param requestId The token that was passed to the native scan, or 0 for the current session.
+     * @param batch The codes that were recognized.
+     */
+    static void scanBatchCompletedCallback(int requestId, List<ScannedCode> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        CodeScanner scanner = getInstance();
+        ScanMetrics m = scanner.metrics;
+        long recognized = m == null ? 0 : m.getRecognizedTime();
+        long dispatched = m == null ? 0 : m.mark(ScanMetrics.PHASE_DISPATCHED);
+        if (requestId == ScanDispatcher.SESSION_TOKEN) {
+            ScanSession s = scanner.session;
+            if (s == null) {
+                return;
+            }
+            DuplicateFilter f = scanner.duplicateFilter;
+            List<ScannedCode> codes = f == null ? batch : f.filter(batch);
+            if (codes.isEmpty()) {
+                // Drop duplicates here so they never cost an EDT call
+                return;
+            }
+            if (scanner.gs1Parsing) {
+                parseGs1(codes);
+            }
+            if (s.getListener() instanceof ExecutorScanResult) {
+                ((ExecutorScanResult)s.getListener()).deliver(s, codes, m, recognized, dispatched);
+                return;
+            }
+            scanner.results.offerResult(null, s, codes, m, recognized, dispatched);
+            return;
+        }
+        ScanResult listener = scanner.dispatcher.take(requestId);
+        if (listener != null && scanner.gs1Parsing) {
+            parseGs1(batch);
+        }
+        if (listener instanceof ExecutorScanResult) {
+            ((ExecutorScanResult)listener).deliver(null, batch, m, recognized, dispatched);
+        } else if (listener != null) {
+            scanner.results.offerResult(listener, null, batch, m, recognized, dispatched);
+        }
+    }
+    
+    private static void parseGs1(List<ScannedCode> codes) {
+        int len = codes.size();
+        for (int i=0; i<len; i++) {
+            codes.get(i).getGs1Data();
+        }
+    }
+    
+    /**
+     * Passes a batch of codes to a listener.  {@link BatchScanResult} listeners receive
+     * the whole batch.  Other listeners receive every code during a session, or only the 
+     * first code for a single scan.
+     */
+    static void deliver(ScanResult listener, List<ScannedCode> codes, boolean all) {
+        if (listener instanceof BatchScanResult) {
+            ((BatchScanResult)listener).scanBatchCompleted(codes);
+            return;
+        }
+        int len = all ? codes.size() : 1;
+        for (int i=0; i<len; i++) {
+            ScannedCode code = codes.get(i);
+            listener.scanCompleted(code.getContents(), code.getFormatName(), code.getRawBytes());
         }
     }
     
     /**
      * Invoked if the user canceled the scan
+     * 
+     * @param requestId the token of the scan, or 0 for the current session
      */
-    static void scanCanceledCallback() {
-        if (getInstance().callback != null) {
-            Display.getInstance().callSerially(new Runnable() {
-                public void run() {
-                    getInstance().callback.scanCanceled();
-                    getInstance().callback = null;
-                    Display.getInstance().getCurrent().revalidate();
-                    Display.getInstance().getCurrent().repaint();
-                }
-            });
+    static void scanCanceledCallback(int requestId) {
+        CodeScanner scanner = getInstance();
+        ScanMetrics m = scanner.metrics;
+        if (m != null) {
+            m.canceled();
+        }
+        if (requestId == ScanDispatcher.SESSION_TOKEN) {
+            ScanSession s = scanner.session;
+            if (s == null) {
+                return;
+            }
+            s.setActive(false);
+            scanner.session = null;
+            if (s.getListener() instanceof ExecutorScanResult) {
+                s.getListener().scanCanceled();
+                return;
+            }
+            scanner.results.offerCanceled(null, s);
+            return;
+        }
+        ScanResult listener = scanner.dispatcher.take(requestId);
+        if (listener instanceof ExecutorScanResult) {
+            listener.scanCanceled();
+        } else if (listener != null) {
+            scanner.results.offerCanceled(listener, null);
         }
     }
     
     /**
      * Invoked if an error occurred during the scanning process
      * 
+     * @param requestId the token of the scan, or 0 for the current session
      * @param errorCode code
      * @param message descriptive message
      */
-    static void scanErrorCallback(final int errorCode, final String message) {
-        if (getInstance().callback != null) {
-            Display.getInstance().callSerially(new Runnable() {
-                public void run() {
-                    getInstance().callback.scanError(errorCode, message);
-                    getInstance().callback = null;
-                    Display.getInstance().getCurrent().revalidate();
-                    Display.getInstance().getCurrent().repaint();
-                }
-            });
-            
+    static void scanErrorCallback(int requestId, final int errorCode, final String message) {
+        CodeScanner scanner = getInstance();
+        ScanMetrics m = scanner.metrics;
+        if (m != null) {
+            m.error();
+        }
+        if (requestId == ScanDispatcher.SESSION_TOKEN) {
+            ScanSession s = scanner.session;
+            if (s == null) {
+                return;
+            }
+            if (s.getListener() instanceof ExecutorScanResult) {
+                s.getListener().scanError(errorCode, message);
+                return;
+            }
+            scanner.results.offerError(null, s, errorCode, message);
+            return;
+        }
+        ScanResult listener = scanner.dispatcher.take(requestId);
+        if (listener instanceof ExecutorScanResult) {
+            listener.scanError(errorCode, message);
+        } else if (listener != null) {
+            scanner.results.offerError(listener, null, errorCode, message);
         }
     }
 }
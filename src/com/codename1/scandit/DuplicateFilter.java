@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drops codes that were already delivered within a time window.  Keeps a bounded
+ * LRU of the most recently seen codes so that memory stays constant during long
+ * scanning sessions.
+ * 
+ * @author Steve Hannah
+ */
+class DuplicateFilter {
+    
+    private static class Seen {
+        long time;
+    }
+    
+    private final int windowMillis;
+    private final LinkedHashMap<String, Seen> cache;
+    
+    DuplicateFilter(int windowMillis, final int cacheSize) {
+        this.windowMillis = windowMillis;
+        cache = new LinkedHashMap<String, Seen>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Seen> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+    
+    int getWindowMillis() {
+        return windowMillis;
+    }
+    
+    /**
+     * Checks whether a code should be delivered, and records it as seen if so.  A code 
+     * is a duplicate if the same key was delivered less than the window ago.
+     * 
+     * @param key The key of the code, as returned by {@link #key(ScannedCode) }
+     * @param now The current time in milliseconds
+     * @return True if the code is new and should be delivered.
+     */
+    synchronized boolean accept(String key, long now) {
+        Seen seen = cache.get(key);
+        if (seen == null) {
+            seen = new Seen();
+            cache.put(key, seen);
+        } else if (now - seen.time < windowMillis) {
+            return false;
+        }
+        seen.time = now;
+        return true;
+    }
+    
+    /**
+     * Removes duplicates from a batch of codes.
+     * @param codes The codes to filter
+     * @return The same list if nothing was dropped, otherwise a new list with
+     * only the accepted codes.
+     */
+    List<ScannedCode> filter(List<ScannedCode> codes) {
+        long now = System.currentTimeMillis();
+        List<ScannedCode> out = null;
+        int len = codes.size();
+        for (int i=0; i<len; i++) {
+            ScannedCode code = codes.get(i);
+            if (accept(key(code), now)) {
+                if (out != null) {
+                    out.add(code);
+                }
+            } else if (out == null) {
+                out = new ArrayList<ScannedCode>(len);
+                for (int j=0; j<i; j++) {
+                    out.add(codes.get(j));
+                }
+            }
+        }
+        return out == null ? codes : out;
+    }
+    
+    /**
+     * Gets the key that a code is compared by.  This is the format followed by the 
+     * contents, or by the raw bytes when text payloads are disabled, so that the same 
+     * data in two symbologies isn't treated as a duplicate.
+     */
+    static String key(ScannedCode code) {
+        StringBuilder sb = new StringBuilder();
+        String formatName = code.getFormatName();
+        if (formatName != null) {
+            sb.append(formatName);
+        }
+        sb.append('\0');
+        String contents = code.getContents();
+        if (contents != null) {
+            sb.append(contents);
+            return sb.toString();
+        }
+        byte[] raw = code.getRawBytes();
+        if (raw != null) {
+            for (int i=0; i<raw.length; i++) {
+                sb.append((char)(raw[i] & 0xff));
+            }
+        }
+        return sb.toString();
+    }
+    
+    synchronized void clear() {
+        cache.clear();
+    }
+}
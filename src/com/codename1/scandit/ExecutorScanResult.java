@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import java.util.List;
+
+/**
+ * A listener whose results are delivered on a {@link ScanExecutor} instead of the EDT.
+ * The scanner callbacks detect this listener and hand results to the executor straight
+ * from the native callback thread, bypassing the EDT queue.
+ *
+ * @author Steve Hannah
+ */
+class ExecutorScanResult implements BatchScanResult {
+    private final ScanResult listener;
+    private final ScanExecutor executor;
+
+    ExecutorScanResult(ScanResult listener, ScanExecutor executor) {
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    private void execute(Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Delivers a batch of codes on the executor, with the same session checks and
+     * metrics as delivery on the EDT.
+     * @param session The session, or null for a single scan.
+     */
+    void deliver(final ScanSession session, final List<ScannedCode> codes, final ScanMetrics metrics,
+            final long recognized, final long dispatched) {
+        execute(()->{
+            int count = codes.size();
+            if (session != null) {
+                if (!session.isActive()) {
+                    return;
+                }
+                session.incrementScanCount(count);
+            } else if (!(listener instanceof BatchScanResult)) {
+                count = 1;
+            }
+            if (metrics != null) {
+                metrics.delivered(recognized, dispatched, count);
+            }
+            CodeScanner.deliver(listener, codes, session != null);
+        });
+    }
+
+    @Override
+    public void scanBatchCompleted(final List<ScannedCode> codes) {
+        execute(()->CodeScanner.deliver(listener, codes, true));
+    }
+
+    @Override
+    public void scanCompleted(final String contents, final String formatName, final byte[] rawBytes) {
+        execute(()->listener.scanCompleted(contents, formatName, rawBytes));
+    }
+
+    @Override
+    public void scanCanceled() {
+        execute(()->listener.scanCanceled());
+    }
+
+    @Override
+    public void scanError(final int errorCode, final String message) {
+        execute(()->listener.scanError(errorCode, message));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * The elements of a GS1 element string, as parsed by {@link Gs1Parser#parse(java.lang.String) }.
+ * The elements are stored as offsets into the scanned data, and each value is only 
+ * turned into a string when it is requested.
+ * 
+ * @author Steve Hannah
+ * @see ScannedCode#getGs1Data() 
+ */
+public final class Gs1Data {
+    static final int FIELDS = 4;
+    
+    private final String text;
+    private final byte[] bytes;
+    // ai, ai length, value start, value end for each element
+    private final int[] fields;
+    private final int size;
+    
+    Gs1Data(String text, byte[] bytes, int[] fields, int size) {
+        this.text = text;
+        this.bytes = bytes;
+        this.fields = fields;
+        this.size = size;
+    }
+    
+    /**
+     * Gets the number of elements.
+     * @return The number of elements.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the AI of an element as a number, e.g. 1 for AI 01.
+     * @param index The index of the element.
+     * @return The AI.
+     */
+    public int getAi(int index) {
+        return fields[field(index)];
+    }
+    
+    /**
+     * Gets the AI of an element as a string, with leading zeros, e.g. "01".
+     * @param index The index of the element.
+     * @return The AI.
+     */
+    public String getAiString(int index) {
+        int i = field(index);
+        return Gs1Parser.formatAi(fields[i], fields[i + 1]);
+    }
+    
+    /**
+     * Gets the value of an element.
+     * @param index The index of the element.
+     * @return The value.
+     */
+    public String getValue(int index) {
+        int i = field(index);
+        return Gs1Parser.substring(text, bytes, fields[i + 2], fields[i + 3]);
+    }
+    
+    /**
+     * Finds the first element with an AI.
+     * @param ai The AI, e.g. "01" or "3103".
+     * @return The index of the element, or -1 if there is no such element.
+     */
+    public int indexOf(String ai) {
+        int len = ai.length();
+        int code = 0;
+        for (int i=0; i<len; i++) {
+            int d = ai.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            code = code * 10 + d;
+        }
+        for (int i=0; i<size; i++) {
+            int f = i * FIELDS;
+            if (fields[f] == code && fields[f + 1] == len) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Gets the value of the first element with an AI.
+     * @param ai The AI, e.g. "01" or "3103".
+     * @return The value, or null if there is no such element.
+     */
+    public String get(String ai) {
+        int i = indexOf(ai);
+        return i < 0 ? null : getValue(i);
+    }
+    
+    private int field(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index "+index+" out of bounds for "+size+" elements");
+        }
+        return index * FIELDS;
+    }
+    
+    /**
+     * Formats the elements in the human readable form, e.g. {@literal (01)09501101530003(10)AB12}.
+     * @return The elements.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<size; i++) {
+            sb.append('(').append(getAiString(i)).append(')').append(getValue(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * A streaming parser for GS1 element strings, as carried by GS1-128 (Code 128), GS1 
+ * DataMatrix, GS1 QR and GS1 DataBar codes.  The data is split into Application 
+ * Identifier (AI) / value pairs in a single pass, without creating a substring for each
+ * element.
+ * 
+ * <p>The parser is a cursor over the data.  It can be reused for any number of codes,
+ * so parsing with it allocates nothing.  Values are read as offsets into the data, and
+ * are only turned into strings when {@link #getValue() } is called:</p>
+ * 
+ * <pre>{@code
+ * Gs1Parser p = new Gs1Parser();
+ * p.reset(code.getContents());
+ * while (p.next()) {
+ *     if (p.getAi() == 1) {
+ *         gtin = p.getValueAsLong();
+ *     } else if (p.getAi() == 10) {
+ *         batch = p.getValue();
+ *     }
+ * }
+ * if (p.hasError()) {
+ *     // Not a valid GS1 element string
+ * }
+ * }</pre>
+ * 
+ * <p>Variable length values end with an FNC1, which scanners transmit as the group 
+ * separator character (ASCII 29), or at the end of the data.  Values of the AIs that have 
+ * a predefined length (e.g. 01, 11-17, 310n) don't need a separator.  A leading symbology 
+ * identifier such as {@literal ]C1} or {@literal ]d2}, and a leading FNC1, are skipped.
+ * The human readable form with the AIs in parentheses, e.g. {@literal (01)09501101530003(10)AB12}, 
+ * is also accepted.</p>
+ * 
+ * <p>For a parsed copy that can be kept, use {@link #parse(java.lang.String) }, or 
+ * {@link ScannedCode#getGs1Data() }.  The parser does not check the values themselves,
+ * e.g. check digits or dates.</p>
+ * 
+ * @author Steve Hannah
+ */
+public final class Gs1Parser {
+    
+    /**
+     * The group separator character that scanners transmit for FNC1.
+     */
+    public static final char GS = '\u001d';
+    
+    /**
+     * The number of digits of the AIs that start with each two digit prefix, or 0 if no
+     * AIs start with the prefix.
+     */
+    private static final byte[] AI_LENGTH = new byte[100];
+    
+    /**
+     * The length of the values of the AIs that start with each two digit prefix, if it 
+     * is one of the prefixes with a predefined length, or 0.
+     */
+    private static final byte[] FIXED_LENGTH = new byte[100];
+    
+    static {
+        setAiLength(2, 0, 4);
+        setAiLength(2, 10, 22);
+        setAiLength(3, 23, 25);
+        setAiLength(2, 30, 30);
+        setAiLength(4, 31, 36);
+        setAiLength(2, 37, 37);
+        setAiLength(4, 39, 39);
+        setAiLength(3, 40, 42);
+        setAiLength(4, 43, 43);
+        setAiLength(4, 70, 70);
+        setAiLength(3, 71, 71);
+        setAiLength(4, 72, 72);
+        setAiLength(4, 80, 82);
+        setAiLength(2, 90, 99);
+        
+        FIXED_LENGTH[0] = 18;
+        FIXED_LENGTH[1] = 14;
+        FIXED_LENGTH[2] = 14;
+        FIXED_LENGTH[3] = 14;
+        FIXED_LENGTH[4] = 16;
+        for (int i=11; i<=19; i++) {
+            FIXED_LENGTH[i] = 6;
+        }
+        FIXED_LENGTH[20] = 2;
+        for (int i=31; i<=36; i++) {
+            FIXED_LENGTH[i] = 6;
+        }
+        FIXED_LENGTH[41] = 13;
+    }
+    
+    private static void setAiLength(int length, int from, int to) {
+        for (int i=from; i<=to; i++) {
+            AI_LENGTH[i] = (byte)length;
+        }
+    }
+    
+    private String text;
+    private byte[] bytes;
+    private int end;
+    private int pos;
+    private boolean parenthesized;
+    private boolean error;
+    
+    private int ai;
+    private int aiLength;
+    private int valueStart;
+    private int valueEnd;
+    
+    /**
+     * Starts parsing a string.
+     * @param data The element string.
+     * @return This parser.
+     */
+    public Gs1Parser reset(String data) {
+        text = data;
+        bytes = null;
+        return start(data == null ? 0 : data.length());
+    }
+    
+    /**
+     * Starts parsing raw bytes, e.g. from {@link ScannedCode#getRawBytes() }.  The bytes
+     * are not copied, so they must not change while they are parsed.
+     * @param data The element string.
+     * @return This parser.
+     */
+    public Gs1Parser reset(byte[] data) {
+        text = null;
+        bytes = data;
+        return start(data == null ? 0 : data.length);
+    }
+    
+    private Gs1Parser start(int length) {
+        end = length;
+        pos = 0;
+        error = false;
+        ai = -1;
+        aiLength = 0;
+        valueStart = 0;
+        valueEnd = 0;
+        // Symbology identifier, e.g. ]C1 for GS1-128 or ]d2 for GS1 DataMatrix
+        if (end >= 3 && at(0) == ']') {
+            pos = 3;
+        }
+        while (pos < end && at(pos) == GS) {
+            pos++;
+        }
+        parenthesized = pos < end && at(pos) == '(';
+        return this;
+    }
+    
+    private int at(int i) {
+        return bytes != null ? bytes[i] & 0xff : text.charAt(i);
+    }
+    
+    private int digit(int i) {
+        int c = at(i) - '0';
+        return c >= 0 && c <= 9 ? c : -1;
+    }
+    
+    /**
+     * Moves to the next element.
+     * @return True if there is another element.  False at the end of the data, or if 
+     * the data is not a valid element string, in which case {@link #hasError() } is true.
+     */
+    public boolean next() {
+        if (error) {
+            return false;
+        }
+        while (pos < end && at(pos) == GS) {
+            pos++;
+        }
+        if (pos >= end) {
+            return false;
+        }
+        return parenthesized ? nextParenthesized() : nextElement();
+    }
+    
+    private boolean nextElement() {
+        if (pos + 2 > end) {
+            return fail();
+        }
+        int d1 = digit(pos);
+        int d2 = digit(pos + 1);
+        if (d1 < 0 || d2 < 0) {
+            return fail();
+        }
+        int prefix = d1 * 10 + d2;
+        int len = AI_LENGTH[prefix];
+        if (len == 0 || pos + len > end) {
+            return fail();
+        }
+        int code = prefix;
+        for (int i=2; i<len; i++) {
+            int d = digit(pos + i);
+            if (d < 0) {
+                return fail();
+            }
+            code = code * 10 + d;
+        }
+        int start = pos + len;
+        int stop;
+        int fixed = FIXED_LENGTH[prefix];
+        if (fixed > 0) {
+            stop = start + fixed;
+            if (stop > end) {
+                return fail();
+            }
+        } else {
+            stop = start;
+            while (stop < end && at(stop) != GS) {
+                stop++;
+            }
+        }
+        return element(code, len, start, stop, stop);
+    }
+    
+    private boolean nextParenthesized() {
+        if (at(pos) != '(') {
+            return fail();
+        }
+        int code = 0;
+        int i = pos + 1;
+        while (i < end && at(i) != ')') {
+            int d = digit(i);
+            if (d < 0) {
+                return fail();
+            }
+            code = code * 10 + d;
+            i++;
+        }
+        int len = i - pos - 1;
+        if (i >= end || len < 2 || len > 4) {
+            return fail();
+        }
+        int start = i + 1;
+        int stop = start;
+        while (stop < end && at(stop) != '(' && at(stop) != GS) {
+            stop++;
+        }
+        return element(code, len, start, stop, stop);
+    }
+    
+    private boolean element(int code, int len, int start, int stop, int next) {
+        ai = code;
+        aiLength = len;
+        valueStart = start;
+        valueEnd = stop;
+        pos = next;
+        return true;
+    }
+    
+    private boolean fail() {
+        error = true;
+        ai = -1;
+        return false;
+    }
+    
+    /**
+     * Checks whether parsing stopped because the data is not a valid element string.
+     * @return True if the data is invalid.
+     */
+    public boolean hasError() {
+        return error;
+    }
+    
+    /**
+     * Gets the AI of the current element as a number, e.g. 1 for AI 01, or 3103 for AI 3103.
+     * Use {@link #getAiLength() } to tell apart AIs such as 00 and 0.
+     * @return The AI.
+     */
+    public int getAi() {
+        return ai;
+    }
+    
+    /**
+     * Gets the number of digits in the AI of the current element.
+     * @return The number of digits, from 2 to 4.
+     */
+    public int getAiLength() {
+        return aiLength;
+    }
+    
+    /**
+     * Gets the AI of the current element as a string, with leading zeros, e.g. "01".
+     * @return The AI.
+     */
+    public String getAiString() {
+        return formatAi(ai, aiLength);
+    }
+    
+    static String formatAi(int ai, int length) {
+        String s = String.valueOf(ai);
+        while (s.length() < length) {
+            s = "0" + s;
+        }
+        return s;
+    }
+    
+    /**
+     * Gets the offset of the value of the current element in the data.
+     * @return The offset of the first character of the value.
+     */
+    public int getValueStart() {
+        return valueStart;
+    }
+    
+    /**
+     * Gets the end offset of the value of the current element in the data.
+     * @return The offset after the last character of the value.
+     */
+    public int getValueEnd() {
+        return valueEnd;
+    }
+    
+    /**
+     * Gets the value of the current element.  This creates a string; see 
+     * {@link #getValueAsLong() } and {@link #valueEquals(java.lang.String) } to avoid that.
+     * @return The value.
+     */
+    public String getValue() {
+        return substring(text, bytes, valueStart, valueEnd);
+    }
+    
+    static String substring(String text, byte[] bytes, int start, int end) {
+        if (text != null) {
+            return text.substring(start, end);
+        }
+        char[] out = new char[end - start];
+        for (int i=0; i<out.length; i++) {
+            out[i] = (char)(bytes[start + i] & 0xff);
+        }
+        return new String(out);
+    }
+    
+    /**
+     * Gets the value of the current element as a number, e.g. for a GTIN or a quantity.
+     * @return The value, or -1 if it is empty, is not all digits, or is too long.
+     */
+    public long getValueAsLong() {
+        int len = valueEnd - valueStart;
+        if (len == 0 || len > 18) {
+            return -1;
+        }
+        long out = 0;
+        for (int i=valueStart; i<valueEnd; i++) {
+            int d = digit(i);
+            if (d < 0) {
+                return -1;
+            }
+            out = out * 10 + d;
+        }
+        return out;
+    }
+    
+    /**
+     * Gets the value of the current element as a decimal number.  For the measure and 
+     * amount AIs (31nn-36nn and 39nn), the last digit of the AI is the number of decimals, 
+     * e.g. AI 3103 is a net weight in kg with 3 decimals.  Other values are returned as 
+     * they are, e.g. AI 7003 or 8005.
+     * @return The value, or NaN if it is not a number.
+     */
+    public double getValueAsDecimal() {
+        long v = getValueAsLong();
+        if (v < 0) {
+            return Double.NaN;
+        }
+        if (!hasDecimalPoint(ai, aiLength)) {
+            return v;
+        }
+        double out = v;
+        for (int i=ai % 10; i>0; i--) {
+            out /= 10;
+        }
+        return out;
+    }
+    
+    /**
+     * Checks whether the last digit of an AI is the position of the decimal point in 
+     * its value.
+     */
+    private static boolean hasDecimalPoint(int ai, int aiLength) {
+        if (aiLength != 4) {
+            return false;
+        }
+        int prefix = ai / 100;
+        return (prefix >= 31 && prefix <= 36) || prefix == 39;
+    }
+    
+    /**
+     * Compares the value of the current element with a string, without creating a 
+     * string for the value.
+     * @param s The string to compare to.
+     * @return True if the value is equal to the string.
+     */
+    public boolean valueEquals(String s) {
+        int len = valueEnd - valueStart;
+        if (s.length() != len) {
+            return false;
+        }
+        for (int i=0; i<len; i++) {
+            if (at(valueStart + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Parses a GS1 element string into a copy that can be kept.
+     * @param data The element string.
+     * @return The elements, or null if the data is not a valid element string.
+     */
+    public static Gs1Data parse(String data) {
+        return new Gs1Parser().reset(data).toData();
+    }
+    
+    /**
+     * Parses a GS1 element string from raw bytes into a copy that can be kept.
+     * @param data The element string.
+     * @return The elements, or null if the data is not a valid element string.
+     */
+    public static Gs1Data parse(byte[] data) {
+        return new Gs1Parser().reset(data).toData();
+    }
+    
+    /**
+     * Parses the rest of the data.
+     * @return The elements, or null if the data is not a valid element string.
+     */
+    Gs1Data toData() {
+        int[] fields = new int[16];
+        int count = 0;
+        while (next()) {
+            if ((count + 1) * Gs1Data.FIELDS > fields.length) {
+                int[] grown = new int[fields.length * 2];
+                System.arraycopy(fields, 0, grown, 0, fields.length);
+                fields = grown;
+            }
+            int i = count * Gs1Data.FIELDS;
+            fields[i] = ai;
+            fields[i + 1] = aiLength;
+            fields[i + 2] = valueStart;
+            fields[i + 3] = valueEnd;
+            count++;
+        }
+        if (error || count == 0) {
+            return null;
+        }
+        return new Gs1Data(text, bytes, fields, count);
+    }
+}
@@ -9,11 +9,18 @@ import com.codename1.io.Log;
 import com.codename1.objc.Objc;
 import com.codename1.objc.Pointer;
 import com.codename1.ui.Display;
+import com.codename1.util.Base64;
+import com.codename1.ui.PeerComponent;
 import com.codename1.objc.Runtime;
 import com.codename1.objc.Method;
 import com.codename1.objc.Objc.DelegateObject;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -25,6 +32,7 @@ import java.util.Set;
 class IosCodeScanner {
     private static final int SBSCameraFacingDirectionBack=0;
     private static final int SBSCameraFacingDirectionFront =1;
+    private static final int NSUTF8StringEncoding = 4;
     
     public static final int ERR_SCAN_IN_PROGRESS=1;
     
@@ -36,30 +44,334 @@ class IosCodeScanner {
     
     private Pointer picker;
     
+    private static int runtimeSupported;
+    
+    /**
+     * Checks whether this is iOS, where the scanner is used through the ObjC bridge.  
+     * This is called on every scan, so the answer is cached.
+     */
     public static boolean isSupported() {
-        return Runtime.getInstance().isSupported();
+        if (runtimeSupported == 0) {
+            runtimeSupported = Runtime.getInstance().isSupported() ? 1 : 2;
+        }
+        return runtimeSupported == 1;
     }
     
-    private ScanResult callback;
+    private static final int UIImagePickerControllerSourceTypeCamera = 1;
+    
+    /**
+     * Values of the SBSResolutionPreference enum.
+     */
+    private static final int SBSResolutionPreferenceStandard = 0;
+    private static final int SBSResolutionPreferenceFullHD = 2;
+    
+    /**
+     * Checks whether the Scandit SDK is linked and the device has a camera, without 
+     * loading the scanner.
+     */
+    static boolean isScannerAvailable() {
+        return Objc.classExists("SBSBarcodePicker")
+                && Objc.eval("UIImagePickerController.isSourceTypeAvailable:", UIImagePickerControllerSourceTypeCamera).asBoolean();
+    }
     
-    private static Pointer createScanSettings(Collection<Integer> symbologies) {
-        Pointer scanSettings = Objc.eval("SBSScanSettings.defaultSettings").asPointer();
+    /**
+     * The token of the current single scan, or 0 while a session is running.
+     */
+    private volatile int requestId;
+    
+    private static Pointer createScanSettings(int symbologyMask, int maxCodesPerFrame, ScanArea area, ScanProfile profile) {
+        Pointer scanSettings;
+        if (area != null) {
+            scanSettings = createScanSettings(area);
+        } else {
+            scanSettings = Objc.eval("SBSScanSettings.defaultSettings").asPointer();
+        }
         Objc.setProperty(scanSettings, "cameraFacingPreference", 0);
-        if (symbologies != null) {
-            for (int i : symbologies) {
-                Objc.eval(scanSettings, "setSymbology:enabled:", i, true);
+        Objc.setProperty(scanSettings, "maxNumberOfCodesPerFrame", maxCodesPerFrame);
+        if (profile.getResolution() == ScanProfile.RESOLUTION_STANDARD) {
+            Objc.setProperty(scanSettings, "resolutionPreference", SBSResolutionPreferenceStandard);
+        } else if (profile.getResolution() == ScanProfile.RESOLUTION_HIGH) {
+            Objc.setProperty(scanSettings, "resolutionPreference", SBSResolutionPreferenceFullHD);
+        }
+        if (profile.getMaxFrameRate() > 0) {
+            Objc.setProperty(scanSettings, "maxFrameRate", (float)profile.getMaxFrameRate());
+        }
+        if (profile.getCodeDuplicateFilter() != ScanProfile.DUPLICATE_FILTER_DEFAULT) {
+            Objc.setProperty(scanSettings, "codeDuplicateFilter", profile.getCodeDuplicateFilter());
+        }
+        CodeScanner scanner = CodeScanner.getInstance();
+        for (int m = symbologyMask; m != 0; m &= m - 1) {
+            int symbology = m & -m;
+            Objc.eval(scanSettings, "setSymbology:enabled:", symbology, true);
+            SymbologySettings settings = scanner.getSymbologySettings(symbology);
+            if (settings != null) {
+                applySymbologySettings(scanSettings, settings);
             }
         }
         return scanSettings;
         
     }
     
+    /**
+     * Applies the settings of a symbology to its SBSSymbologySettings.
+     */
+    private static void applySymbologySettings(Pointer scanSettings, SymbologySettings settings) {
+        Pointer symbologySettings = Objc.eval(scanSettings, "settingsForSymbology:", settings.getSymbology()).asPointer();
+        if (Objc.isNull(symbologySettings)) {
+            return;
+        }
+        int[] counts = settings.getActiveSymbolCounts();
+        if (counts != null) {
+            Pointer set = Objc.eval("NSMutableSet.setWithCapacity:", counts.length).asPointer();
+            for (int count : counts) {
+                Objc.eval(set, "addObject:", Objc.eval("NSNumber.numberWithInt:", count).asPointer());
+            }
+            Objc.setProperty(symbologySettings, "activeSymbolCounts", set);
+        }
+        if (settings.getChecksums() != -1) {
+            Objc.setProperty(symbologySettings, "checksums", toNativeChecksums(settings.getChecksums()));
+        }
+        if (settings.isColorInvertedSet()) {
+            Objc.setProperty(symbologySettings, "colorInvertedEnabled", settings.isColorInvertedEnabled());
+        }
+        int len = settings.getExtensionCount();
+        for (int i=0; i<len; i++) {
+            Objc.eval(symbologySettings, "setExtension:enabled:", settings.getExtensionName(i), settings.isExtensionEnabled(i));
+        }
+    }
+    
+    /**
+     * Maps the {@literal CHECKSUM_XXX} constants of {@link SymbologySettings} to the values 
+     * of the SBSChecksum options.
+     */
+    private static final int[][] CHECKSUMS = {
+        {SymbologySettings.CHECKSUM_MOD_10, 0x1},
+        {SymbologySettings.CHECKSUM_MOD_11, 0x2},
+        {SymbologySettings.CHECKSUM_MOD_16, 0x4},
+        {SymbologySettings.CHECKSUM_MOD_43, 0x8},
+        {SymbologySettings.CHECKSUM_MOD_47, 0x10},
+        {SymbologySettings.CHECKSUM_MOD_103, 0x20},
+        {SymbologySettings.CHECKSUM_MOD_1010, 0x40},
+        {SymbologySettings.CHECKSUM_MOD_1110, 0x80}
+    };
+
+    private static int toNativeChecksums(int checksums) {
+        int out = 0;
+        for (int[] c : CHECKSUMS) {
+            if ((checksums & c[0]) != 0) {
+                out |= c[1];
+            }
+        }
+        return out;
+    }
+    
+    /**
+     * Creates settings with a restricted scanning area.  The areas and the hot spot are 
+     * CGRect and CGPoint properties, which can't be passed through the bridge, so the
+     * settings are created from a dictionary instead.
+     * 
+     * <p>The keys are the SBSScanSettings property names, which is what 
+     * {@literal settingsWithDictionary:error:} takes 
+     * (https://docs.scandit.com/5.5/ios/interface_s_b_s_scan_settings.html): 
+     * {@literal restrictedAreaScanningEnabled}, {@literal scanningHotSpot} as {x, y}, and
+     * {@literal activeScanningAreaPortrait} and {@literal activeScanningAreaLandscape} as
+     * {x, y, width, height}, all relative to the frame.  Since a key or value that the 
+     * SDK doesn't understand may just be ignored, the areas are read back from the 
+     * settings and checked.</p>
+     * @return The settings.
+     * @throws IllegalArgumentException If the SDK didn't accept the area.
+     */
+    private static Pointer createScanSettings(ScanArea area) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"restrictedAreaScanningEnabled\":").append(!area.isFull())
+                .append(",\"scanningHotSpot\":{\"x\":").append(area.getHotSpotX())
+                .append(",\"y\":").append(area.getHotSpotY())
+                .append("},\"activeScanningAreaPortrait\":");
+        appendRect(json, area.getX(), area.getY(), area.getWidth(), area.getHeight());
+        json.append(",\"activeScanningAreaLandscape\":");
+        appendRect(json, area.getLandscapeX(), area.getLandscapeY(), area.getLandscapeWidth(), area.getLandscapeHeight());
+        json.append("}");
+        Pointer str = Objc.eval("NSString.stringWithString:", json.toString()).asPointer();
+        Pointer data = Objc.eval(str, "dataUsingEncoding:", NSUTF8StringEncoding).asPointer();
+        Pointer dict = Objc.eval("NSJSONSerialization.JSONObjectWithData:options:error:", data, 0, null).asPointer();
+        Pointer scanSettings = Objc.eval("SBSScanSettings.settingsWithDictionary:error:", dict, null).asPointer();
+        if (Objc.isNull(scanSettings)) {
+            throw new IllegalArgumentException("The Scandit SDK rejected the scan area "+area);
+        }
+        if (Objc.getProperty(scanSettings, "restrictedAreaScanningEnabled").asBoolean() != !area.isFull()
+                || !matches(scanSettings, "scanningHotSpot", area.getHotSpotX(), area.getHotSpotY())
+                || !matches(scanSettings, "activeScanningAreaPortrait", 
+                        area.getX(), area.getY(), area.getWidth(), area.getHeight())
+                || !matches(scanSettings, "activeScanningAreaLandscape", 
+                        area.getLandscapeX(), area.getLandscapeY(), area.getLandscapeWidth(), area.getLandscapeHeight())) {
+            throw new IllegalArgumentException("The Scandit SDK ignored the scan area "+area);
+        }
+        return scanSettings;
+    }
+    
+    /**
+     * Checks a CGPoint or CGRect property against the expected values.  The NSValue
+     * of the property is compared through its description, e.g. "NSRect: {{0, 0.4}, {1, 0.2}}",
+     * since structs can't be read through the bridge.
+     */
+    private static boolean matches(Pointer scanSettings, String key, float... expected) {
+        Pointer value = Objc.eval(scanSettings, "valueForKey:", key).asPointer();
+        if (Objc.isNull(value)) {
+            return false;
+        }
+        String desc = Objc.eval(value, "description").asString();
+        int n = 0;
+        int len = desc.length();
+        int i = 0;
+        while (i < len) {
+            char c = desc.charAt(i);
+            if ((c < '0' || c > '9') && c != '-' && c != '.') {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < len && ((c = desc.charAt(i)) >= '0' && c <= '9' || c == '-' || c == '.' || c == 'e' || c == '+')) {
+                i++;
+            }
+            float f;
+            try {
+                f = Float.parseFloat(desc.substring(start, i));
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+            if (n == expected.length || Math.abs(f - expected[n++]) > 0.001f) {
+                return false;
+            }
+        }
+        return n == expected.length;
+    }
+    
+    /**
+     * Checks that the Scandit SDK accepts a scanning area, so that an area that can't be
+     * applied is reported when it is set instead of being silently replaced with the 
+     * whole frame.
+     * @param area The area.
+     * @throws IllegalArgumentException If the SDK doesn't accept the area.
+     */
+    static void validateScanArea(final ScanArea area) {
+        if (area == null || !isSupported() || !Objc.classExists("SBSScanSettings")) {
+            return;
+        }
+        final String[] error = new String[1];
+        Objc.dispatch_sync(()->{
+            try {
+                createScanSettings(area);
+            } catch (IllegalArgumentException ex) {
+                error[0] = ex.getMessage();
+            }
+        });
+        if (error[0] != null) {
+            throw new IllegalArgumentException(error[0]);
+        }
+    }
+    
+    private static void appendRect(StringBuilder json, float x, float y, float width, float height) {
+        json.append("{\"x\":").append(x).append(",\"y\":").append(y)
+                .append(",\"width\":").append(width).append(",\"height\":").append(height).append("}");
+    }
+    
+    private static final int MAX_CACHED_SETTINGS = 8;
+    
+    /**
+     * Scan settings that have already been built, keyed by {@link #settingsKey(int, int, int) }.
+     * Building settings takes one bridge call per symbology, so they are only built once
+     * for each configuration.  The cached settings are retained, and released when evicted.
+     * The cache is only touched on the main queue, since a lookup reorders it, and an 
+     * eviction releases settings that may be being applied to a picker.
+     */
+    private final LinkedHashMap<Long, Pointer> settingsCache = new LinkedHashMap<Long, Pointer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Pointer> eldest) {
+            if (size() > MAX_CACHED_SETTINGS) {
+                Objc.eval(eldest.getValue(), "release");
+                return true;
+            }
+            return false;
+        }
+    };
+    
+    // The key of the settings that were last applied to the modal picker, or -1 if 
+    // unknown.  Only touched on the main queue.
+    private long appliedSettings = -1;
+    
+    /**
+     * Builds the cache key for a settings configuration.
+     */
+    private static long settingsKey(int symbologyMask, int maxCodesPerFrame, int settingsVersion) {
+        return ((long)settingsVersion << 48) | ((long)(maxCodesPerFrame & 0xffff) << 32) | (symbologyMask & 0xffffffffL);
+    }
+    
+    /**
+     * Gets the settings for a configuration from the cache, building them if needed.  
+     * This must be called on the main queue.
+     */
+    private Pointer getScanSettings(long key, int symbologyMask, int maxCodesPerFrame, ScanArea area, ScanProfile profile) {
+        Pointer scanSettings = settingsCache.get(key);
+        if (scanSettings == null) {
+            scanSettings = createScanSettings(symbologyMask, maxCodesPerFrame, area, profile);
+            Objc.eval(scanSettings, "retain");
+            settingsCache.put(key, scanSettings);
+        }
+        return scanSettings;
+    }
+    
+    /**
+     * Reads the bytes of an NSData.  The bridge can only read native memory one byte
+     * per call, so the data is passed across as a single base64 string instead.
+     */
+    private static byte[] readData(Pointer data) {
+        if (Objc.isNull(data) || Objc.eval(data, "length").asInt() == 0) {
+            return null;
+        }
+        String b64 = Objc.eval(data, "base64EncodedStringWithOptions:", 0).asString();
+        return Base64.decode(b64.getBytes());
+    }
+    
+    /**
+     * Reads the newly recognized codes from an SBSScanSession.
+     * @param session The scan session
+     * @param max The maximum number of codes to read
+     * @param payloadFormats The payloads to read from each code
+     * @return The codes, or null if no codes were recognized.
+     */
+    private static List<ScannedCode> readCodes(Pointer session, int max, int payloadFormats) {
+        Pointer recognized = Objc.getProperty(session, "newlyRecognizedCodes").asPointer();
+        int count = Objc.eval(recognized, "count").asInt();
+        if (count > max) {
+            count = max;
+        }
+        if (count <= 0) {
+            return null;
+        }
+        List<ScannedCode> codes = new ArrayList<ScannedCode>(count);
+        for (int i=0; i<count; i++) {
+            Pointer code = Objc.eval(recognized, "objectAtIndex:", i).asPointer();
+            String symbologyName = Objc.getProperty(code, "symbologyName").asString();
+            String data = null;
+            if ((payloadFormats & CodeScanner.PAYLOAD_TEXT) != 0) {
+                data = Objc.getProperty(code, "data").asString();
+                Log.p("Scanned "+symbologyName+" barcode: "+data);
+            }
+            byte[] rawBytes = null;
+            if ((payloadFormats & CodeScanner.PAYLOAD_RAW_BYTES) != 0) {
+                rawBytes = readData(Objc.getProperty(code, "rawData").asPointer());
+            }
+            codes.add(new ScannedCode(data, symbologyName, rawBytes));
+        }
+        return codes;
+    }
+    
     public IosCodeScanner(String licenseKey) {
         Log.p("Creating new IosCodeScanner");
         Objc.dispatch_sync(()->{
             Objc.eval("SBSLicense.setAppKey:", licenseKey);
             
-            picker = Objc.eval("SBSBarcodePicker.alloc.initWithSettings:", createScanSettings(null)).asPointer();
+            picker = Objc.eval("SBSBarcodePicker.alloc.initWithSettings:", createScanSettings(0, 1, null, ScanProfile.DEFAULT)).asPointer();
             if (picker == null || picker.address == 0) {
                 throw new RuntimeException("Failed to create picker");
             }
@@ -74,19 +386,41 @@ class IosCodeScanner {
 
                         @Override
                         public Object invoke(Object... args) {
+                            if (!inProgress || modalBufferResult != null) {
+                                return null;
+                            }
+                            // Recorded before the hop to the main thread so 
+                            // that the hop is included in the metrics.
+                            CodeScanner.markPhase(ScanMetrics.PHASE_RECOGNIZED);
+                            // Read and filter the codes on the engine's thread, while 
+                            // the session is valid, so that the filters don't hold up 
+                            // the main thread.  This is done before the picker is 
+                            // stopped, so that a rejected code leaves the camera running.
+                            final List<ScannedCode> codes;
+                            try {
+                                codes = CodeScanner.filterCodes(readCodes(getArgAsPointer(args[1]), maxCodesPerFrame, payloadFormats));
+                            } catch (Throwable t) {
+                                if (CodeScanner.debug) {
+                                    Log.e(t);
+                                }
+                                CodeScanner.scanErrorCallback(continuous ? ScanDispatcher.SESSION_TOKEN : requestId, 0, t.getMessage());
+                                return null;
+                            }
+                            if (codes == null) {
+                                return null;
+                            }
                             Objc.dispatch_async(()->{
                                 if (!inProgress || modalBufferResult != null) {
                                     // prevent this from scanning twice
                                     return;
                                 }
                                 try {
-                                    //Pointer picker = getArgAsPointer(args[0]);
-                                    Pointer session = getArgAsPointer(args[1]);
-                                    Pointer recognized = Objc.getProperty(session, "newlyRecognizedCodes").asPointer();
-                                    Pointer code = Objc.eval(recognized, "firstObject").asPointer();
-                                    String symbologyName = Objc.getProperty(code, "symbologyName").asString();
-                                    String data = Objc.getProperty(code, "data").asString();
-                                    Log.p("Scanned "+symbologyName+" barcode: "+data);
+                                    if (continuous) {
+                                        // Sessions keep the picker open, so there is
+                                        // no need to wait for the animation.
+                                        CodeScanner.scanBatchCompletedCallback(ScanDispatcher.SESSION_TOKEN, codes);
+                                        return;
+                                    }
 
                                     // The animation to show the camera isn't finished
                                     // we'll store this result in a buffer and then call the callback
@@ -95,13 +429,14 @@ class IosCodeScanner {
                                         Objc.eval(picker, "stopScanning");
 
                                         Objc.dismissViewController(picker, true, null);
+                                        // Read the token before clearing inProgress, since
+                                        // the next scan may replace it.
+                                        int req = requestId;
                                         inProgress = false;
-                                        Display.getInstance().callSerially(()->{
-                                            callback.scanCompleted(data, symbologyName, null);
-                                        });
+                                        CodeScanner.scanBatchCompletedCallback(req, codes);
                                     } else {
-                                        modalBufferResult = data;
-                                        modalBufferSymbologyName = symbologyName;
+                                        modalBufferResult = codes;
+                                        CodeScanner.countModalBuffered();
                                     }
 
 
@@ -109,9 +444,7 @@ class IosCodeScanner {
                                     if (CodeScanner.debug) {
                                         Log.e(t);
                                     }
-                                    Display.getInstance().callSerially(()->{
-                                        callback.scanError(0, t.getMessage());
-                                    });
+                                    CodeScanner.scanErrorCallback(continuous ? ScanDispatcher.SESSION_TOKEN : requestId, 0, t.getMessage());
                                 }
                                 return;
                             });
@@ -128,11 +461,15 @@ class IosCodeScanner {
                         public Object invoke(Object... args) {
                             Objc.dispatch_async(()->{
                                 Objc.eval(picker, "stopScanning");
+                                int req = requestId;
                                 inProgress = false;
                                 Objc.dismissViewController(picker, true, null);
-                                Display.getInstance().callSerially(()->{
-                                    callback.scanCanceled();
-                                });
+                                if (continuous) {
+                                    continuous = false;
+                                    CodeScanner.scanCanceledCallback(ScanDispatcher.SESSION_TOKEN);
+                                    return;
+                                }
+                                CodeScanner.scanCanceledCallback(req);
                             });
                             
                             
@@ -149,68 +486,294 @@ class IosCodeScanner {
     
     
     public void setSymbologyEnabled(int symbology, boolean enabled) {
-        Objc.eval(picker, "setSymbology:enabled:", symbology, enabled);
+        Objc.dispatch_async(()->{
+            Objc.eval(picker, "setSymbology:enabled:", symbology, enabled);
+            appliedSettings = -1;
+        });
     }
     
     private boolean modalStartAnimationDone;
-    private String modalBufferResult;
-    private String modalBufferSymbologyName;
-    private boolean inProgress;
+    private volatile List<ScannedCode> modalBufferResult;
+    private volatile int maxCodesPerFrame = 1;
+    private volatile int payloadFormats = CodeScanner.PAYLOAD_TEXT;
+    private volatile boolean inProgress;
+    private volatile boolean continuous;
     
-    private void returnModalBuffer() {
-        Display.getInstance().callSerially(()->{
-            if (callback != null) {
-                callback.scanCompleted(modalBufferResult, modalBufferSymbologyName, null);
-            }
-        });
-    }
     
     
     /**
-     * Scans based on the settings in this class and returns the results
+     * Scans based on the settings in this class and reports the results to 
+     * {@link CodeScanner} with the given request ID.
      * 
-     * @param callback scan results
+     * @param requestId The token of the scan
+     * @param symbologyMask The symbologies to enable, OR'd together
+     * @param maxCodesPerFrame The maximum number of codes to deliver from the first frame
      */
-    public void scan(Collection<Integer> symbologies, ScanResult callback) {
+    public void scan(int requestId, int symbologyMask, int maxCodesPerFrame) {
         if (inProgress) {
             Log.p("Scanning is currently in progress");
-            if (callback != null) {
-                Display.getInstance().callSerially(()->callback.scanError(ERR_SCAN_IN_PROGRESS, "Scan already in progress"));
-            }
+            CodeScanner.scanErrorCallback(requestId, ERR_SCAN_IN_PROGRESS, "Scan already in progress");
             return;
         }
-        inProgress = true;
         Log.p("In scanQRCode");
-        this.callback = callback;
-        Objc.eval(picker, "applyScanSettings:completionHandler:", createScanSettings(symbologies), (Runnable)()->{
-            Objc.dispatch_async(()->{
-                Objc.eval(picker, "startScanning");
-                Log.p("About to present View controller");
-                modalStartAnimationDone = false;
-                modalBufferResult = null;
-                Objc.presentViewController(picker, true, ()->{
-                    if (modalBufferResult != null) {
-                        Objc.eval(picker, "stopScanning");
-                        inProgress = false;
-                        Objc.dismissViewController(picker, true, null);
-                        returnModalBuffer();
-                    }
-                    modalStartAnimationDone = true;
-                });
+        // Written before inProgress, which the engine thread checks first
+        continuous = false;
+        this.requestId = requestId;
+        this.maxCodesPerFrame = maxCodesPerFrame;
+        this.payloadFormats = CodeScanner.getInstance().getPayloadFormats();
+        inProgress = true;
+        present(symbologyMask, maxCodesPerFrame);
+    }
+    
+    /**
+     * Opens the picker and keeps it open, passing each scanned code to 
+     * {@link CodeScanner#scanBatchCompletedCallback(int, java.util.List) }
+     * until {@link #stopSession() } is called.
+     * 
+     * @param symbologyMask The symbologies to enable, OR'd together
+     * @param maxCodesPerFrame The maximum number of codes to deliver per frame
+     * @return False if a scan is already in progress.
+     */
+    public boolean startSession(int symbologyMask, int maxCodesPerFrame) {
+        if (inProgress) {
+            Log.p("Scanning is currently in progress");
+            return false;
+        }
+        continuous = true;
+        this.requestId = ScanDispatcher.SESSION_TOKEN;
+        this.maxCodesPerFrame = maxCodesPerFrame;
+        this.payloadFormats = CodeScanner.getInstance().getPayloadFormats();
+        inProgress = true;
+        present(symbologyMask, maxCodesPerFrame);
+        return true;
+    }
+    
+    /**
+     * Closes the picker that was opened with {@link #startSession(int, int) }.
+     */
+    public void stopSession() {
+        Objc.dispatch_async(()->{
+            if (!inProgress || !continuous) {
+                return;
+            }
+            continuous = false;
+            Objc.eval(picker, "stopScanning");
+            inProgress = false;
+            Objc.dismissViewController(picker, true, null);
+        });
+    }
+    
+    private void present(int symbologyMask, int maxCodesPerFrame) {
+        Runnable start = ()->{
+            Objc.eval(picker, "startScanning");
+            Log.p("About to present View controller");
+            modalStartAnimationDone = false;
+            modalBufferResult = null;
+            Objc.presentViewController(picker, true, ()->{
+                CodeScanner.markPhase(ScanMetrics.PHASE_PRESENTED);
+                if (modalBufferResult != null) {
+                    Objc.eval(picker, "stopScanning");
+                    int req = requestId;
+                    inProgress = false;
+                    Objc.dismissViewController(picker, true, null);
+                    CodeScanner.scanBatchCompletedCallback(req, modalBufferResult);
+                }
+                modalStartAnimationDone = true;
+            });
+        };
+        CodeScanner scanner = CodeScanner.getInstance();
+        final long key = settingsKey(symbologyMask, maxCodesPerFrame, scanner.getSettingsVersion());
+        final ScanArea area = scanner.getActiveScanArea();
+        final ScanProfile profile = scanner.getProfile();
+        Objc.dispatch_async(()->{
+            if (key == appliedSettings) {
+                // The picker already has these settings
+                start.run();
+                return;
+            }
+            Pointer scanSettings;
+            try {
+                scanSettings = getScanSettings(key, symbologyMask, maxCodesPerFrame, area, profile);
+            } catch (Throwable t) {
+                Log.e(t);
+                int req = requestId;
+                continuous = false;
+                inProgress = false;
+                CodeScanner.scanErrorCallback(req, 0, t.getMessage());
+                return;
+            }
+            appliedSettings = key;
+            Objc.eval(picker, "applyScanSettings:completionHandler:", scanSettings, (Runnable)()->{
+                Objc.dispatch_async(start);
             });
         });
-        
-        
-        
     }
         
     
+    /**
+     * A picker that is embedded in a {@link ScannerView}.  Each view has its own picker,
+     * since a UIView can only be in one place in the view hierarchy.
+     */
+    private static class ViewPicker {
+        Pointer picker;
+        volatile boolean scanning;
+        volatile int maxCodesPerFrame = 1;
+        volatile int payloadFormats = CodeScanner.PAYLOAD_TEXT;
+        // The key of the settings that were last applied, or -1 if unknown
+        long appliedSettings = -1;
+    }
+    
+    // Only used on the main thread, except for creation
+    private final Map<Integer, ViewPicker> viewPickers = new HashMap<Integer, ViewPicker>();
+    
+    /**
+     * Creates a picker whose view can be embedded in a form.  Unlike the modal 
+     * picker, it is never presented or dismissed.  Every recognized code is
+     * passed to {@link CodeScanner#scanBatchCompletedCallback(int, java.util.List) }
+     * while it is scanning.
+     * 
+     * @param viewId The ID of the {@link ScannerView}.
+     * @return A peer component that wraps the picker's view.
+     */
+    public PeerComponent createScannerPeer(int viewId) {
+        final ViewPicker vp = new ViewPicker();
+        Objc.dispatch_sync(()->{
+            vp.picker = Objc.eval("SBSBarcodePicker.alloc.initWithSettings:", createScanSettings(0, 1, null, ScanProfile.DEFAULT)).asPointer();
+            if (vp.picker == null || vp.picker.address == 0) {
+                throw new RuntimeException("Failed to create picker");
+            }
+            Pointer overlayController = Objc.getProperty(vp.picker, "overlayController").asPointer();
+            Objc.eval(overlayController, "showToolBar:", false);
+            DelegateObject delegate = Objc.makeDelegate()
+                    .add(new Method("SBSScanDelegate", "barcodePicker:didScan:") {
+
+                        @Override
+                        public Object invoke(Object... args) {
+                            if (!vp.scanning) {
+                                return null;
+                            }
+                            CodeScanner.markPhase(ScanMetrics.PHASE_RECOGNIZED);
+                            // Filtered on the engine's thread, like the modal picker
+                            final List<ScannedCode> codes;
+                            try {
+                                codes = CodeScanner.filterCodes(readCodes(getArgAsPointer(args[1]), vp.maxCodesPerFrame, vp.payloadFormats));
+                            } catch (Throwable t) {
+                                if (CodeScanner.debug) {
+                                    Log.e(t);
+                                }
+                                CodeScanner.scanErrorCallback(ScanDispatcher.SESSION_TOKEN, 0, t.getMessage());
+                                return null;
+                            }
+                            if (codes == null) {
+                                return null;
+                            }
+                            Objc.dispatch_async(()->{
+                                if (vp.scanning) {
+                                    CodeScanner.scanBatchCompletedCallback(ScanDispatcher.SESSION_TOKEN, codes);
+                                }
+                            });
+                            return null;
+                        }
+                    });
+            Objc.setProperty(vp.picker, "scanDelegate", delegate);
+            viewPickers.put(viewId, vp);
+        });
+        return Objc.createPeerComponent(()->Objc.getProperty(vp.picker, "view").asPointer());
+    }
+    
+    /**
+     * Starts scanning in the picker created by {@link #createScannerPeer(int) }.
+     * @param viewId The ID of the {@link ScannerView}.
+     * @param symbologyMask The symbologies to enable, OR'd together
+     * @param maxCodesPerFrame The maximum number of codes to deliver per frame
+     */
+    public void startViewScanning(final int viewId, final int symbologyMask, final int maxCodesPerFrame) {
+        final int payloadFormats = CodeScanner.getInstance().getPayloadFormats();
+        CodeScanner scanner = CodeScanner.getInstance();
+        final long key = settingsKey(symbologyMask, maxCodesPerFrame, scanner.getSettingsVersion());
+        final ScanArea area = scanner.getActiveScanArea();
+        final ScanProfile profile = scanner.getProfile();
+        Objc.dispatch_async(()->{
+            final ViewPicker vp = viewPickers.get(viewId);
+            if (vp == null) {
+                return;
+            }
+            vp.maxCodesPerFrame = maxCodesPerFrame;
+            vp.payloadFormats = payloadFormats;
+            Runnable start = ()->{
+                if (viewPickers.get(viewId) != vp) {
+                    // Released while the settings were applied
+                    return;
+                }
+                vp.scanning = true;
+                Objc.eval(vp.picker, "startScanning");
+                CodeScanner.markPhase(ScanMetrics.PHASE_PRESENTED);
+            };
+            if (key == vp.appliedSettings) {
+                start.run();
+                return;
+            }
+            Pointer scanSettings;
+            try {
+                scanSettings = getScanSettings(key, symbologyMask, maxCodesPerFrame, area, profile);
+            } catch (Throwable t) {
+                Log.e(t);
+                CodeScanner.scanErrorCallback(ScanDispatcher.SESSION_TOKEN, 0, t.getMessage());
+                return;
+            }
+            vp.appliedSettings = key;
+            Objc.eval(vp.picker, "applyScanSettings:completionHandler:", scanSettings, (Runnable)()->{
+                Objc.dispatch_async(start);
+            });
+        });
+    }
+    
+    /**
+     * Stops scanning in the picker created by {@link #createScannerPeer(int) }.
+     * @param viewId The ID of the {@link ScannerView}.
+     */
+    public void stopViewScanning(final int viewId) {
+        Objc.dispatch_async(()->{
+            ViewPicker vp = viewPickers.get(viewId);
+            if (vp != null) {
+                vp.scanning = false;
+                Objc.eval(vp.picker, "stopScanning");
+            }
+        });
+    }
+    
+    /**
+     * Stops and releases the picker created by {@link #createScannerPeer(int) }.
+     * @param viewId The ID of the {@link ScannerView}.
+     */
+    public void releaseScannerPeer(final int viewId) {
+        Objc.dispatch_async(()->{
+            ViewPicker vp = viewPickers.remove(viewId);
+            if (vp != null) {
+                vp.scanning = false;
+                Objc.eval(vp.picker, "stopScanning");
+                Objc.eval(Objc.getProperty(vp.picker, "view").asPointer(), "removeFromSuperview");
+                Objc.eval(vp.picker, "release");
+            }
+        });
+    }
+    
     protected void finalize() throws Throwable {
-        try {
-            Objc.eval(picker, "release");
-        } catch (Throwable t) {
-            Log.e(t);
-        }
+        // The pickers and the settings cache are only touched on the main queue
+        Objc.dispatch_async(()->{
+            try {
+                Objc.eval(picker, "release");
+                for (ViewPicker vp : viewPickers.values()) {
+                    Objc.eval(vp.picker, "release");
+                }
+                for (Pointer scanSettings : settingsCache.values()) {
+                    Objc.eval(scanSettings, "release");
+                }
+                settingsCache.clear();
+            } catch (Throwable t) {
+                Log.e(t);
+            }
+        });
     }
     
     
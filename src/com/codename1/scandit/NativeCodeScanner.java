@@ -6,12 +6,82 @@
 package com.codename1.scandit;
 
 import com.codename1.system.NativeInterface;
+import com.codename1.ui.PeerComponent;
 
 /**
  *
  * @author shannah
  */
 public interface NativeCodeScanner extends NativeInterface {
-    public void scan(int[] symbologies);
+    /**
+     * Opens the scanner to scan a single code.  The result must be reported with
+     * the same request ID, e.g. {@link CodeScanner#scanBatchCompletedCallback(int, java.util.List) }.
+     * Recognized codes must first be passed to {@link CodeScanner#filterCodes(java.util.List) },
+     * and the scan must go on if it returns null.
+     * @param requestId The token of the scan.
+     * @param symbologyMask The symbologies to enable, OR'd together.
+     */
+    public void scan(int requestId, int symbologyMask);
+    
+    /**
+     * Opens the scanner and keeps it open, passing every recognized code to
+     * {@link CodeScanner#scanBatchCompletedCallback(int, java.util.List) }
+     * with request ID 0 until {@link #stopSession() } is called.
+     * @param symbologyMask The symbologies to enable, OR'd together.
+     */
+    public void startSession(int symbologyMask);
+    
+    /**
+     * Stops the session started with {@link #startSession(int) } and closes the scanner.
+     */
+    public void stopSession();
+    
+    /**
+     * Creates the picker ahead of the first scan so that it can be reused.
+     */
+    public void warmUp();
+    
+    /**
+     * Releases the picker created by {@link #warmUp() } or by a scan.
+     */
+    public void releaseScanner();
+    
+    /**
+     * Creates a scanner view that can be embedded in a form.  Each {@link ScannerView}
+     * gets its own view, which is kept until {@link #releaseScannerView(int) } is called.
+     * @param viewId The ID of the {@link ScannerView}.
+     * @return The native peer.
+     */
+    public PeerComponent createScannerView(int viewId);
+    
+    /**
+     * Starts scanning in the view created by {@link #createScannerView(int) }.  Every
+     * recognized code is passed to {@link CodeScanner#scanBatchCompletedCallback(int, java.util.List) }
+     * with request ID 0 until {@link #stopViewScanning(int) } is called.
+     * @param viewId The ID of the {@link ScannerView}.
+     * @param symbologyMask The symbologies to enable, OR'd together.
+     */
+    public void startViewScanning(int viewId, int symbologyMask);
+    
+    /**
+     * Stops scanning in the view created by {@link #createScannerView(int) }.
+     * @param viewId The ID of the {@link ScannerView}.
+     */
+    public void stopViewScanning(int viewId);
+    
+    /**
+     * Stops scanning in the view created by {@link #createScannerView(int) }, and 
+     * releases it.
+     * @param viewId The ID of the {@link ScannerView}.
+     */
+    public void releaseScannerView(int viewId);
+    
+    /**
+     * Checks whether {@link #isSupported() } can give a definite answer yet.  On Android
+     * the camera can't be checked before there is an activity, so an answer given then 
+     * is only a guess and shouldn't be kept.
+     * @return True if the result of {@link #isSupported() } can be cached.
+     */
+    public boolean isSupportKnown();
     
 }
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import com.codename1.ui.Display;
+import com.codename1.ui.Form;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes results from the native scanner thread to the EDT without allocating per result.
+ * Results are copied into pooled slots in a ring buffer, and a single runnable, which is
+ * this object, drains the ring on the EDT.  The runnable is only queued with
+ * {@link Display#callSerially(java.lang.Runnable) } when the ring goes from empty to
+ * non-empty, so a burst of results costs one EDT call.
+ *
+ * <p>Results, cancellations and errors share the ring so that they are delivered in
+ * the order they were reported.  The ring grows if the EDT falls behind, so nothing is
+ * ever dropped.</p>
+ *
+ * <p>With a delivery window, session results wait up to the window for more results,
+ * and consecutive results of the same session are merged into a single batch.
+ * Results of single scans, cancellations and errors are never held back.</p>
+ *
+ * @author Steve Hannah
+ */
+class ResultQueue implements Runnable {
+    static final int TYPE_RESULT = 0;
+    static final int TYPE_CANCELED = 1;
+    static final int TYPE_ERROR = 2;
+
+    /**
+     * A pooled result.  Slots are reused, and are cleared after delivery so they don't
+     * keep listeners or codes alive.
+     */
+    private static final class Slot {
+        int type;
+        ScanResult listener;
+        ScanSession session;
+        List<ScannedCode> codes;
+        ScanMetrics metrics;
+        long recognized;
+        long dispatched;
+        int errorCode;
+        String message;
+        boolean refresh;
+
+        void copyFrom(Slot s) {
+            type = s.type;
+            listener = s.listener;
+            session = s.session;
+            codes = s.codes;
+            metrics = s.metrics;
+            recognized = s.recognized;
+            dispatched = s.dispatched;
+            errorCode = s.errorCode;
+            message = s.message;
+            refresh = s.refresh;
+        }
+
+        void clear() {
+            listener = null;
+            session = null;
+            codes = null;
+            metrics = null;
+            message = null;
+        }
+    }
+
+    private Slot[] ring;
+    private int head;
+    private int size;
+    private boolean scheduled;
+    private int windowMillis;
+    private volatile boolean refreshForm;
+    // When the window of the pending drain ends, or 0 if no drain is waiting for it
+    private long due;
+    private Thread windowThread;
+
+    // Only used on the EDT
+    private final Slot current = new Slot();
+
+    ResultQueue(int capacity) {
+        ring = new Slot[capacity];
+        for (int i=0; i<capacity; i++) {
+            ring[i] = new Slot();
+        }
+    }
+
+    /**
+     * Sets how long session results are held back so that they can be delivered 
+     * together.
+     * @param millis The window in milliseconds, or 0 to deliver right away.
+     */
+    synchronized void setWindow(int millis) {
+        windowMillis = millis;
+        notifyAll();
+    }
+
+    synchronized int getWindow() {
+        return windowMillis;
+    }
+
+    /**
+     * Sets whether the current form is revalidated and repainted after a single scan 
+     * result, and after a cancellation.
+     */
+    void setRefreshForm(boolean refresh) {
+        refreshForm = refresh;
+    }
+
+    boolean isRefreshForm() {
+        return refreshForm;
+    }
+
+    /**
+     * Queues a batch of codes.
+     * @param listener The listener of a single scan, or null for a session.
+     * @param session The session, or null for a single scan.
+     */
+    void offerResult(ScanResult listener, ScanSession session, List<ScannedCode> codes,
+            ScanMetrics metrics, long recognized, long dispatched) {
+        boolean schedule;
+        synchronized (this) {
+            Slot s = acquire(TYPE_RESULT, listener, session);
+            s.codes = codes;
+            s.metrics = metrics;
+            s.recognized = recognized;
+            s.dispatched = dispatched;
+            s.refresh = session == null;
+            schedule = schedule(session == null);
+        }
+        if (schedule) {
+            Display.getInstance().callSerially(this);
+        }
+    }
+
+    /**
+     * Queues a cancellation.
+     * @param listener The listener of a single scan, or null for a session.
+     * @param session The session, or null for a single scan.
+     */
+    void offerCanceled(ScanResult listener, ScanSession session) {
+        boolean schedule;
+        synchronized (this) {
+            acquire(TYPE_CANCELED, listener, session).refresh = true;
+            schedule = schedule(true);
+        }
+        if (schedule) {
+            Display.getInstance().callSerially(this);
+        }
+    }
+
+    /**
+     * Queues an error.
+     * @param listener The listener of a single scan, or null for a session.
+     * @param session The session, or null for a single scan.
+     */
+    void offerError(ScanResult listener, ScanSession session, int errorCode, String message) {
+        boolean schedule;
+        synchronized (this) {
+            Slot s = acquire(TYPE_ERROR, listener, session);
+            s.errorCode = errorCode;
+            s.message = message;
+            s.refresh = session == null;
+            schedule = schedule(true);
+        }
+        if (schedule) {
+            Display.getInstance().callSerially(this);
+        }
+    }
+
+    /**
+     * Gets the next free slot, growing the ring if it is full.  Must be called while
+     * synchronized.
+     */
+    private Slot acquire(int type, ScanResult listener, ScanSession session) {
+        if (size == ring.length) {
+            Slot[] grown = new Slot[ring.length * 2];
+            for (int i=0; i<size; i++) {
+                grown[i] = ring[(head + i) % ring.length];
+            }
+            for (int i=size; i<grown.length; i++) {
+                grown[i] = new Slot();
+            }
+            ring = grown;
+            head = 0;
+        }
+        Slot s = ring[(head + size) % ring.length];
+        size++;
+        s.type = type;
+        s.listener = listener;
+        s.session = session;
+        return s;
+    }
+
+    /**
+     * Marks the drain as scheduled.  Must be called while synchronized.
+     * @param immediate True if the drain must not wait for the delivery window.
+     * @return True if the caller must queue the drain on the EDT now.
+     */
+    private boolean schedule(boolean immediate) {
+        if (scheduled) {
+            if (immediate && due != 0) {
+                // Stop waiting for the window
+                due = 0;
+                return true;
+            }
+            return false;
+        }
+        scheduled = true;
+        if (immediate || windowMillis <= 0) {
+            return true;
+        }
+        due = System.currentTimeMillis() + windowMillis;
+        if (windowThread == null) {
+            windowThread = Display.getInstance().startThread(()->waitForWindows(), "CodeScanner delivery");
+            windowThread.start();
+        } else {
+            notifyAll();
+        }
+        return false;
+    }
+
+    /**
+     * Queues the drain when each delivery window ends.  Runs on its own thread until 
+     * the window is set back to 0.
+     */
+    private void waitForWindows() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    if (due == 0) {
+                        if (windowMillis <= 0) {
+                            windowThread = null;
+                            return;
+                        }
+                        wait();
+                        continue;
+                    }
+                    long wait = due - System.currentTimeMillis();
+                    if (wait > 0) {
+                        wait(wait);
+                        continue;
+                    }
+                } catch (InterruptedException ex) {
+                    continue;
+                }
+                due = 0;
+            }
+            Display.getInstance().callSerially(this);
+        }
+    }
+
+    /**
+     * Drains the ring on the EDT.
+     */
+    public void run() {
+        Slot s = current;
+        boolean done = false;
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (size == 0) {
+                        scheduled = false;
+                        done = true;
+                        return;
+                    }
+                    Slot src = ring[head];
+                    s.copyFrom(src);
+                    src.clear();
+                    head = (head + 1) % ring.length;
+                    size--;
+                    if (windowMillis > 0 && s.type == TYPE_RESULT && s.session != null) {
+                        mergeSessionResults(s);
+                    }
+                }
+                deliver(s);
+                s.clear();
+            }
+        } finally {
+            if (!done) {
+                // A listener threw.  Let the exception reach the EDT's error handling,
+                // and deliver the rest of the ring in a later call.
+                s.clear();
+                Display.getInstance().callSerially(this);
+            }
+        }
+    }
+
+    /**
+     * Appends the codes of the following results of the same session to a result, so
+     * that they are delivered as one batch.  Must be called while synchronized.
+     */
+    private void mergeSessionResults(Slot s) {
+        List<ScannedCode> merged = null;
+        while (size > 0) {
+            Slot next = ring[head];
+            if (next.type != TYPE_RESULT || next.session != s.session) {
+                break;
+            }
+            if (merged == null) {
+                merged = new ArrayList<ScannedCode>(s.codes.size() + next.codes.size());
+                merged.addAll(s.codes);
+            }
+            merged.addAll(next.codes);
+            next.clear();
+            head = (head + 1) % ring.length;
+            size--;
+        }
+        if (merged != null) {
+            s.codes = merged;
+        }
+    }
+
+    private void deliver(Slot s) {
+        ScanSession session = s.session;
+        ScanResult listener = session != null ? session.getListener() : s.listener;
+        switch (s.type) {
+            case TYPE_RESULT: {
+                int count = s.codes.size();
+                if (session != null) {
+                    if (!session.isActive()) {
+                        return;
+                    }
+                    session.incrementScanCount(count);
+                } else if (!(listener instanceof BatchScanResult)) {
+                    count = 1;
+                }
+                if (s.metrics != null) {
+                    s.metrics.delivered(s.recognized, s.dispatched, count);
+                }
+                CodeScanner.deliver(listener, s.codes, session != null);
+                break;
+            }
+            case TYPE_CANCELED:
+                listener.scanCanceled();
+                break;
+            case TYPE_ERROR:
+                listener.scanError(s.errorCode, s.message);
+                break;
+        }
+        if (s.refresh && refreshForm) {
+            Form f = Display.getInstance().getCurrent();
+            if (f != null) {
+                f.revalidate();
+                f.repaint();
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * An immutable region of the camera frame in which codes are searched for.  Restricting
+ * the scanning area means the recognition engine only has to look at part of each frame,
+ * which makes decoding a lot faster on low-end devices.
+ * 
+ * <p>All coordinates are relative to the camera preview, from 0 to 1, with (0,0) at the 
+ * top left.  The portrait and landscape areas can be different, since a band that spans 
+ * the width of the screen in portrait would be short and wide in landscape.  The hot spot 
+ * is the point where the engine starts looking for codes, and it gives preference to the 
+ * code closest to it when there are several.</p>
+ * 
+ * <pre>{@code
+ * // A band through the middle of the preview, 20% of its height
+ * CodeScanner.getInstance().setScanArea(ScanArea.band(0.2f));
+ * 
+ * // A box in the upper half in portrait, and the left half in landscape
+ * CodeScanner.getInstance().setScanArea(new ScanArea(0.1f, 0.1f, 0.8f, 0.4f)
+ *         .withLandscape(0f, 0.1f, 0.5f, 0.8f)
+ *         .withHotSpot(0.5f, 0.3f));
+ * }</pre>
+ * 
+ * @author Steve Hannah
+ * @see CodeScanner#setScanArea(com.codename1.scandit.ScanArea) 
+ */
+public final class ScanArea {
+    
+    /**
+     * The whole camera frame.
+     */
+    public static final ScanArea FULL = new ScanArea(0, 0, 1, 1);
+    
+    private final float x, y, width, height;
+    private final float landscapeX, landscapeY, landscapeWidth, landscapeHeight;
+    private final float hotSpotX, hotSpotY;
+    
+    /**
+     * Creates an area that is the same in portrait and landscape, with the hot spot
+     * in its center.
+     * @param x The left edge.
+     * @param y The top edge.
+     * @param width The width.
+     * @param height The height.
+     */
+    public ScanArea(float x, float y, float width, float height) {
+        this(x, y, width, height, x, y, width, height, x + width / 2, y + height / 2);
+    }
+    
+    private ScanArea(float x, float y, float width, float height, 
+            float landscapeX, float landscapeY, float landscapeWidth, float landscapeHeight,
+            float hotSpotX, float hotSpotY) {
+        checkRect(x, y, width, height);
+        checkRect(landscapeX, landscapeY, landscapeWidth, landscapeHeight);
+        if (hotSpotX < 0 || hotSpotX > 1 || hotSpotY < 0 || hotSpotY > 1) {
+            throw new IllegalArgumentException("Hot spot must be between 0 and 1");
+        }
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.landscapeX = landscapeX;
+        this.landscapeY = landscapeY;
+        this.landscapeWidth = landscapeWidth;
+        this.landscapeHeight = landscapeHeight;
+        this.hotSpotX = hotSpotX;
+        this.hotSpotY = hotSpotY;
+    }
+    
+    private static void checkRect(float x, float y, float width, float height) {
+        if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > 1.0001f || y + height > 1.0001f) {
+            throw new IllegalArgumentException("Scan area must be inside the frame: "+x+","+y+" "+width+"x"+height);
+        }
+    }
+    
+    /**
+     * Creates an area that spans the width of the frame, centered vertically.  This is
+     * the usual area for 1D bar codes.
+     * @param height The height of the band, relative to the frame height.
+     * @return The area.
+     */
+    public static ScanArea band(float height) {
+        return new ScanArea(0, (1 - height) / 2, 1, height);
+    }
+    
+    /**
+     * Returns a copy of this area with a different area in landscape orientation.
+     * @param x The left edge.
+     * @param y The top edge.
+     * @param width The width.
+     * @param height The height.
+     * @return The new area.  This area is not modified.
+     */
+    public ScanArea withLandscape(float x, float y, float width, float height) {
+        return new ScanArea(this.x, this.y, this.width, this.height, x, y, width, height, hotSpotX, hotSpotY);
+    }
+    
+    /**
+     * Returns a copy of this area with a different hot spot.
+     * @param x The horizontal position of the hot spot.
+     * @param y The vertical position of the hot spot.
+     * @return The new area.  This area is not modified.
+     */
+    public ScanArea withHotSpot(float x, float y) {
+        return new ScanArea(this.x, this.y, width, height, landscapeX, landscapeY, landscapeWidth, landscapeHeight, x, y);
+    }
+    
+    /**
+     * Gets the left edge of the area in portrait.
+     * @return The left edge.
+     */
+    public float getX() {
+        return x;
+    }
+    
+    /**
+     * Gets the top edge of the area in portrait.
+     * @return The top edge.
+     */
+    public float getY() {
+        return y;
+    }
+    
+    /**
+     * Gets the width of the area in portrait.
+     * @return The width.
+     */
+    public float getWidth() {
+        return width;
+    }
+    
+    /**
+     * Gets the height of the area in portrait.
+     * @return The height.
+     */
+    public float getHeight() {
+        return height;
+    }
+    
+    /**
+     * Gets the left edge of the area in landscape.
+     * @return The left edge.
+     */
+    public float getLandscapeX() {
+        return landscapeX;
+    }
+    
+    /**
+     * Gets the top edge of the area in landscape.
+     * @return The top edge.
+     */
+    public float getLandscapeY() {
+        return landscapeY;
+    }
+    
+    /**
+     * Gets the width of the area in landscape.
+     * @return The width.
+     */
+    public float getLandscapeWidth() {
+        return landscapeWidth;
+    }
+    
+    /**
+     * Gets the height of the area in landscape.
+     * @return The height.
+     */
+    public float getLandscapeHeight() {
+        return landscapeHeight;
+    }
+    
+    /**
+     * Gets the horizontal position of the hot spot.
+     * @return The horizontal position.
+     */
+    public float getHotSpotX() {
+        return hotSpotX;
+    }
+    
+    /**
+     * Gets the vertical position of the hot spot.
+     * @return The vertical position.
+     */
+    public float getHotSpotY() {
+        return hotSpotY;
+    }
+    
+    /**
+     * Checks whether this area is the whole frame, in which case scanning doesn't need
+     * to be restricted.
+     * @return True if the area covers the whole frame in both orientations.
+     */
+    public boolean isFull() {
+        return x == 0 && y == 0 && width >= 1 && height >= 1
+                && landscapeX == 0 && landscapeY == 0 && landscapeWidth >= 1 && landscapeHeight >= 1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ScanArea)) {
+            return false;
+        }
+        ScanArea a = (ScanArea)obj;
+        return a.x == x && a.y == y && a.width == width && a.height == height
+                && a.landscapeX == landscapeX && a.landscapeY == landscapeY 
+                && a.landscapeWidth == landscapeWidth && a.landscapeHeight == landscapeHeight
+                && a.hotSpotX == hotSpotX && a.hotSpotY == hotSpotY;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Float.floatToIntBits(x);
+        h = 31 * h + Float.floatToIntBits(y);
+        h = 31 * h + Float.floatToIntBits(width);
+        h = 31 * h + Float.floatToIntBits(height);
+        h = 31 * h + Float.floatToIntBits(landscapeX);
+        h = 31 * h + Float.floatToIntBits(landscapeY);
+        h = 31 * h + Float.floatToIntBits(landscapeWidth);
+        h = 31 * h + Float.floatToIntBits(landscapeHeight);
+        h = 31 * h + Float.floatToIntBits(hotSpotX);
+        return 31 * h + Float.floatToIntBits(hotSpotY);
+    }
+
+    @Override
+    public String toString() {
+        return "ScanArea[portrait="+x+","+y+" "+width+"x"+height
+                +", landscape="+landscapeX+","+landscapeY+" "+landscapeWidth+"x"+landscapeHeight
+                +", hotSpot="+hotSpotX+","+hotSpotY+"]";
+    }
+}
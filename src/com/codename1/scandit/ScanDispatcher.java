@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Routes the results of single scans to the listener that started them.  Each scan
+ * is registered with a token that is passed to the native scanner, and the native
+ * scanner passes the same token back with its result.  A token can only be taken once,
+ * so a result can never reach the listener of a different scan, and late or repeated
+ * results for a finished scan are ignored.
+ *
+ * <p>Token 0 is never handed out.  Natives use it for results that belong to the current
+ * {@link ScanSession}.</p>
+ *
+ * @author Steve Hannah
+ */
+class ScanDispatcher {
+    static final int SESSION_TOKEN = 0;
+
+    private final HashMap<Integer, ScanResult> pending = new HashMap<Integer, ScanResult>();
+    private int nextToken = 1;
+
+    /**
+     * Registers a listener for a new scan.
+     * @param listener The listener for the scan.
+     * @return The token for the scan.
+     */
+    synchronized int register(ScanResult listener) {
+        int token = nextToken++;
+        if (nextToken <= SESSION_TOKEN) {
+            nextToken = SESSION_TOKEN + 1;
+        }
+        pending.put(token, listener);
+        return token;
+    }
+
+    /**
+     * Removes the listener for a scan.  This is called on the thread that reports the
+     * result, so that the listener is resolved before the result is passed to the EDT.
+     * @param token The token for the scan.
+     * @return The listener, or null if the scan already finished.
+     */
+    synchronized ScanResult take(int token) {
+        if (token == SESSION_TOKEN) {
+            return null;
+        }
+        return pending.remove(token);
+    }
+
+    /**
+     * Checks whether any scans are waiting for a result.
+     * @return True if a scan is in progress.
+     */
+    synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Removes all of the waiting scans.
+     * @return The listeners of the scans that were removed.
+     */
+    synchronized List<ScanResult> takeAll() {
+        List<ScanResult> out = new ArrayList<ScanResult>(pending.values());
+        pending.clear();
+        return out;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * Runs scan results on a thread of the app's choosing, for listeners that never touch 
+ * the UI.  See {@link CodeScanner#onExecutor(com.codename1.scandit.ScanResult, com.codename1.scandit.ScanExecutor) }.
+ * 
+ * <p>This has the same shape as {@literal java.util.concurrent.Executor}, which isn't
+ * available on all platforms, so on platforms that have it an executor can be passed 
+ * as {@code executor::execute}.  A {@literal com.codename1.util.EasyThread} can be passed 
+ * as {@code easyThread::run}.</p>
+ * 
+ * @author Steve Hannah
+ */
+public interface ScanExecutor {
+    
+    /**
+     * Runs a task, usually on another thread.  Results are delivered in order if the 
+     * executor runs tasks one at a time in the order they were submitted.
+     * @param task The task to run.
+     */
+    public void execute(Runnable task);
+}
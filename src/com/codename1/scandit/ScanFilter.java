@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * Decides whether a recognized code is accepted.  Filters are added with 
+ * {@link CodeScanner#addScanFilter(com.codename1.scandit.ScanFilter) }, and run on the 
+ * native scanner thread as soon as a code is recognized, before the picker is closed
+ * and before anything is passed to the EDT.  A rejected code is dropped, and a single
+ * scan keeps the camera open until an accepted code is recognized, so apps that check
+ * a prefix, a length or a check digit don't pay for closing the camera and an EDT call
+ * for codes they would throw away.
+ * 
+ * <p>Since filters run on the scanner thread, they must be fast, thread safe, and must 
+ * not touch the UI.  See {@link ScanFilters} for common filters.</p>
+ * 
+ * @author Steve Hannah
+ */
+public interface ScanFilter {
+    
+    /**
+     * Checks a recognized code.
+     * @param code The code.
+     * @return True to deliver the code, or false to drop it and keep scanning.
+     */
+    public boolean accept(ScannedCode code);
+}
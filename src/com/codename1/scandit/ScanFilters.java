@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * Common {@link ScanFilter}s.  These check the text contents of a code, so they 
+ * reject codes without text, e.g. when only raw payloads are enabled with 
+ * {@link CodeScanner#setPayloadFormats(int) }.
+ * 
+ * <pre>{@code
+ * CodeScanner scanner = CodeScanner.getInstance();
+ * scanner.addScanFilter(ScanFilters.prefix("590", "400"));
+ * scanner.addScanFilter(ScanFilters.gtinCheckDigit());
+ * }</pre>
+ * 
+ * @author Steve Hannah
+ */
+public final class ScanFilters {
+    
+    private ScanFilters() {
+    }
+    
+    /**
+     * Accepts codes whose contents start with one of the given prefixes.
+     * @param prefixes The prefixes.
+     * @return The filter.
+     */
+    public static ScanFilter prefix(String... prefixes) {
+        final String[] p = new String[prefixes.length];
+        System.arraycopy(prefixes, 0, p, 0, p.length);
+        return code->{
+            String s = code.getContents();
+            if (s == null) {
+                return false;
+            }
+            for (int i=0; i<p.length; i++) {
+                if (s.startsWith(p[i])) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+    
+    /**
+     * Accepts codes whose contents have a length in a range.
+     * @param min The minimum length.
+     * @param max The maximum length.
+     * @return The filter.
+     */
+    public static ScanFilter length(final int min, final int max) {
+        if (min > max) {
+            throw new IllegalArgumentException("min can't be greater than max");
+        }
+        return code->{
+            String s = code.getContents();
+            return s != null && s.length() >= min && s.length() <= max;
+        };
+    }
+    
+    /**
+     * Accepts codes of the given formats, e.g. "EAN13".  This is only needed to treat 
+     * formats differently in other filters, since codes of symbologies that were not 
+     * requested are never recognized.
+     * @param formatNames The format names, as returned by {@link ScannedCode#getFormatName() }.
+     * @return The filter.
+     */
+    public static ScanFilter format(String... formatNames) {
+        final String[] f = new String[formatNames.length];
+        System.arraycopy(formatNames, 0, f, 0, f.length);
+        return code->{
+            String name = code.getFormatName();
+            for (int i=0; i<f.length; i++) {
+                if (f[i].equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+    
+    /**
+     * Accepts codes whose contents are a GTIN with a valid GS1 mod 10 check digit, 
+     * i.e. EAN-8, UPC-A, EAN-13 and GTIN-14 numbers.
+     * @return The filter.
+     */
+    public static ScanFilter gtinCheckDigit() {
+        return code->isValidGtin(code.getContents());
+    }
+    
+    /**
+     * Checks the GS1 mod 10 check digit of a GTIN.
+     * @param s The GTIN.
+     * @return True if the GTIN has 8, 12, 13 or 14 digits, and a valid check digit.
+     */
+    public static boolean isValidGtin(String s) {
+        if (s == null) {
+            return false;
+        }
+        int len = s.length();
+        if (len != 8 && len != 12 && len != 13 && len != 14) {
+            return false;
+        }
+        int sum = 0;
+        for (int i=0; i<len; i++) {
+            int d = s.charAt(len - 1 - i) - '0';
+            if (d < 0 || d > 9) {
+                return false;
+            }
+            // Weights are 1 for the check digit, then 3, 1, 3... going left
+            sum += (i % 2 == 1) ? d * 3 : d;
+        }
+        return sum % 10 == 0;
+    }
+}
@@ -0,0 +1,614 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import com.codename1.io.FileSystemStorage;
+import com.codename1.io.Log;
+import com.codename1.io.Util;
+import com.codename1.ui.Display;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only log of scanned codes in {@link FileSystemStorage}, for apps that need 
+ * to keep scans while offline and upload them later.
+ * 
+ * <p>Appending a code only encodes it into memory.  Writes are batched and committed to
+ * the file by a background thread every {@link #setCommitInterval(int) commit interval}, or
+ * as soon as {@link #setMaxBatchSize(int) a batch} is full, so scanning never waits for
+ * storage.  Each record is checksummed, so a record that was only partially written 
+ * when the app was killed is ignored when the journal is opened again.</p>
+ * 
+ * <p>Codes stay in the journal until they are acknowledged.  Use {@link #drain(int) } to
+ * get a batch of the oldest codes, upload them, and then {@link #acknowledge(long) } the
+ * batch.  If the app is killed before the acknowledgement is committed, the same batch 
+ * is returned again after a restart, so uploads should be idempotent on the 
+ * {@link Entry#getSequence() sequence number}.</p>
+ * 
+ * <h4>Usage</h4>
+ * <pre>{@code
+ * ScanJournal journal = ScanJournal.open("scans.journal");
+ * CodeScanner.getInstance().startSession(CodeScanner.SYMBOLOGY_CODE128, journal.record(listener));
+ * 
+ * // ... when online
+ * List<ScanJournal.Entry> batch = journal.drain(100);
+ * if (!batch.isEmpty() && upload(batch)) {
+ *     journal.acknowledge(batch.get(batch.size()-1).getSequence());
+ * }
+ * }</pre>
+ *
+ * @author Steve Hannah
+ */
+public class ScanJournal {
+    
+    /**
+     * A scanned code in the journal.
+     */
+    public static class Entry {
+        private final long sequence;
+        private final long time;
+        private final ScannedCode code;
+        
+        Entry(long sequence, long time, ScannedCode code) {
+            this.sequence = sequence;
+            this.time = time;
+            this.code = code;
+        }
+        
+        /**
+         * Gets the sequence number of this entry.  Sequence numbers increase with each 
+         * code and are never reused, so they can be used to make uploads idempotent.
+         * @return The sequence number.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+        
+        /**
+         * Gets the time the code was added to the journal.
+         * @return The time in milliseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+        
+        /**
+         * Gets the scanned code.
+         * @return The code.
+         */
+        public ScannedCode getCode() {
+            return code;
+        }
+
+        @Override
+        public String toString() {
+            return sequence+" "+code;
+        }
+    }
+    
+    private static final int MAGIC = 0x434E534A;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 5;
+    private static final byte TYPE_SCAN = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final String TMP_SUFFIX = ".tmp";
+    
+    /**
+     * The file is rewritten without the acknowledged codes once it is larger than this,
+     * and most of its records are acknowledged.
+     */
+    private static final int COMPACT_THRESHOLD = 64 * 1024;
+    
+    private final String path;
+    private final List<Entry> pending = new ArrayList<Entry>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final Object writeLock = new Object();
+    private int bufferedRecords;
+    private long nextSequence = 1;
+    private long fileLength;
+    private int acknowledgedRecords;
+    private boolean needsRewrite;
+    private int commitInterval = 200;
+    private int maxBatchSize = 64;
+    private boolean closed;
+    private Thread committer;
+    
+    /**
+     * Opens a journal, reading the codes that weren't acknowledged yet.  The file is 
+     * created if it doesn't exist.
+     * @param path The full path of the file in {@link FileSystemStorage}.
+     * @throws IOException If the file can't be read.
+     */
+    public ScanJournal(String path) throws IOException {
+        this.path = path;
+        replay();
+    }
+    
+    /**
+     * Opens a journal in the app home directory.
+     * @param name The file name.
+     * @return The journal.
+     * @throws IOException If the file can't be read.
+     */
+    public static ScanJournal open(String name) throws IOException {
+        return new ScanJournal(FileSystemStorage.getInstance().getAppHomePath() + name);
+    }
+    
+    /**
+     * Sets how long appended codes may wait before they are committed to the file.
+     * The default is 200ms.
+     * @param millis The commit interval in milliseconds.
+     */
+    public void setCommitInterval(int millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("Commit interval must be at least 1ms");
+        }
+        this.commitInterval = millis;
+    }
+    
+    /**
+     * Sets the number of records that triggers a commit before the commit interval is up.
+     * The default is 64.
+     * @param records The number of records.
+     */
+    public void setMaxBatchSize(int records) {
+        if (records < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.maxBatchSize = records;
+    }
+    
+    /**
+     * Adds a code to the journal.  This doesn't write to storage, so it is safe to call 
+     * on the EDT.  The code is committed by the background thread.
+     * @param code The code to add.
+     * @return The sequence number of the code.
+     */
+    public synchronized long append(ScannedCode code) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        Entry e = new Entry(nextSequence++, System.currentTimeMillis(), code);
+        pending.add(e);
+        try {
+            record.reset();
+            recordOut.writeByte(TYPE_SCAN);
+            recordOut.writeLong(e.sequence);
+            recordOut.writeLong(e.time);
+            writeString(recordOut, code.getFormatName());
+            writeString(recordOut, code.getContents());
+            byte[] raw = code.getRawBytes();
+            if (raw == null) {
+                recordOut.writeInt(-1);
+            } else {
+                recordOut.writeInt(raw.length);
+                recordOut.write(raw);
+            }
+            addRecord();
+        } catch (IOException ex) {
+            // Only writes to memory
+            throw new RuntimeException(ex.getMessage());
+        }
+        return e.sequence;
+    }
+    
+    /**
+     * Wraps a listener so that every scanned code is added to this journal before it is 
+     * passed on.
+     * @param listener The listener to pass the codes to, or null.
+     * @return The wrapped listener.
+     */
+    public BatchScanResult record(final ScanResult listener) {
+        return new BatchScanResult() {
+            @Override
+            public void scanBatchCompleted(List<ScannedCode> codes) {
+                int len = codes.size();
+                for (int i=0; i<len; i++) {
+                    append(codes.get(i));
+                }
+                if (listener != null) {
+                    CodeScanner.deliver(listener, codes, true);
+                }
+            }
+
+            @Override
+            public void scanCompleted(String contents, String formatName, byte[] rawBytes) {
+                append(new ScannedCode(contents, formatName, rawBytes));
+                if (listener != null) {
+                    listener.scanCompleted(contents, formatName, rawBytes);
+                }
+            }
+
+            @Override
+            public void scanCanceled() {
+                if (listener != null) {
+                    listener.scanCanceled();
+                }
+            }
+
+            @Override
+            public void scanError(int errorCode, String message) {
+                if (listener != null) {
+                    listener.scanError(errorCode, message);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Gets the oldest codes that haven't been acknowledged.  The codes stay in the journal
+     * until they are acknowledged, so calling this again returns the same codes.
+     * @param max The maximum number of codes to return.
+     * @return The codes, oldest first.  Empty if there are none.
+     */
+    public synchronized List<Entry> drain(int max) {
+        int len = Math.min(max, pending.size());
+        List<Entry> out = new ArrayList<Entry>(len);
+        for (int i=0; i<len; i++) {
+            out.add(pending.get(i));
+        }
+        return out;
+    }
+    
+    /**
+     * Removes all codes up to and including a sequence number from the journal, e.g. after 
+     * they were uploaded.  Acknowledging the same codes again does nothing.
+     * @param sequence The sequence number of the last code to remove.
+     */
+    public synchronized void acknowledge(long sequence) {
+        int count = 0;
+        while (count < pending.size() && pending.get(count).sequence <= sequence) {
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        for (int i=count-1; i>=0; i--) {
+            pending.remove(i);
+        }
+        acknowledgedRecords += count;
+        try {
+            record.reset();
+            recordOut.writeByte(TYPE_ACK);
+            recordOut.writeLong(sequence);
+            addRecord();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        }
+    }
+    
+    /**
+     * Gets the number of codes that haven't been acknowledged.
+     * @return The number of codes.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Commits everything that was appended or acknowledged so far, without waiting for 
+     * the background thread.
+     * @throws IOException If the file can't be written.
+     */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            byte[] data;
+            boolean rewrite;
+            synchronized (this) {
+                rewrite = needsRewrite || (fileLength > COMPACT_THRESHOLD && acknowledgedRecords > pending.size());
+                if (!rewrite && bufferedRecords == 0) {
+                    return;
+                }
+                data = rewrite ? encodePending() : buffer.toByteArray();
+                buffer.reset();
+                bufferedRecords = 0;
+                needsRewrite = false;
+            }
+            try {
+                if (rewrite) {
+                    rewrite(data);
+                } else {
+                    OutputStream out = FileSystemStorage.getInstance().openOutputStream(path, (int)fileLength);
+                    try {
+                        out.write(data);
+                    } finally {
+                        Util.cleanup(out);
+                    }
+                    fileLength += data.length;
+                }
+            } catch (IOException ex) {
+                synchronized (this) {
+                    // The file may end with a partial batch now, so it is rewritten
+                    // from memory on the next commit.
+                    needsRewrite = true;
+                }
+                throw ex;
+            }
+        }
+    }
+    
+    /**
+     * Commits everything and stops the background thread.
+     * @throws IOException If the file can't be written.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        flush();
+    }
+    
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    /**
+     * Frames the record in {@link #record} with its length and checksum, and adds it to
+     * the write buffer.  Must be called while synchronized.
+     */
+    private void addRecord() throws IOException {
+        frame(record.toByteArray(), buffer);
+        bufferedRecords++;
+        if (committer == null) {
+            startCommitter();
+        }
+        if (bufferedRecords == 1 || bufferedRecords >= maxBatchSize) {
+            notifyAll();
+        }
+    }
+    
+    private static void frame(byte[] body, ByteArrayOutputStream dest) throws IOException {
+        DataOutputStream out = new DataOutputStream(dest);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeInt(checksum(body, 0, body.length));
+    }
+    
+    /**
+     * Adler-32 checksum.
+     */
+    private static int checksum(byte[] data, int off, int len) {
+        int a = 1;
+        int b = 0;
+        for (int i=off; i<off+len; i++) {
+            a = (a + (data[i] & 0xff)) % 65521;
+            b = (b + a) % 65521;
+        }
+        return (b << 16) | a;
+    }
+    
+    private void startCommitter() {
+        committer = Display.getInstance().startThread(()->{
+            while (true) {
+                synchronized (ScanJournal.this) {
+                    try {
+                        while (bufferedRecords == 0 && !needsRewrite && !closed) {
+                            // Nothing to commit, so sleep until addRecord() wakes us
+                            ScanJournal.this.wait();
+                        }
+                        if (bufferedRecords < maxBatchSize && !closed) {
+                            ScanJournal.this.wait(commitInterval);
+                        }
+                    } catch (InterruptedException ex) {
+                        // Commit now
+                    }
+                    if (closed) {
+                        committer = null;
+                        return;
+                    }
+                }
+                try {
+                    flush();
+                } catch (IOException ex) {
+                    Log.e(ex);
+                }
+            }
+        }, "ScanJournal");
+        committer.start();
+    }
+    
+    /**
+     * Encodes the file contents for the codes that haven't been acknowledged.  Must be 
+     * called while synchronized.
+     */
+    private byte[] encodePending() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        int len = pending.size();
+        for (int i=0; i<len; i++) {
+            Entry e = pending.get(i);
+            record.reset();
+            recordOut.writeByte(TYPE_SCAN);
+            recordOut.writeLong(e.sequence);
+            recordOut.writeLong(e.time);
+            writeString(recordOut, e.code.getFormatName());
+            writeString(recordOut, e.code.getContents());
+            byte[] raw = e.code.getRawBytes();
+            if (raw == null) {
+                recordOut.writeInt(-1);
+            } else {
+                recordOut.writeInt(raw.length);
+                recordOut.write(raw);
+            }
+            frame(record.toByteArray(), out);
+        }
+        if (len == 0 && nextSequence > 1) {
+            // Keep the last sequence number so that numbers are never reused
+            record.reset();
+            recordOut.writeByte(TYPE_ACK);
+            recordOut.writeLong(nextSequence - 1);
+            frame(record.toByteArray(), out);
+        }
+        acknowledgedRecords = 0;
+        return out.toByteArray();
+    }
+    
+    /**
+     * Replaces the file with new contents.  The contents are written to a temporary file
+     * first, which then replaces the file.  If the app is killed after the file was 
+     * deleted and before the temporary file was renamed, the journal is recovered from 
+     * the temporary file when it is opened again.
+     */
+    private void rewrite(byte[] data) throws IOException {
+        FileSystemStorage fs = FileSystemStorage.getInstance();
+        String tmp = path + TMP_SUFFIX;
+        OutputStream out = fs.openOutputStream(tmp);
+        try {
+            out.write(data);
+        } finally {
+            Util.cleanup(out);
+        }
+        if (fs.exists(path)) {
+            fs.delete(path);
+        }
+        String name = path.substring(path.lastIndexOf(fs.getFileSystemSeparator()) + 1);
+        fs.rename(tmp, name);
+        fileLength = data.length;
+    }
+    
+    private static byte[] read(String file) throws IOException {
+        FileSystemStorage fs = FileSystemStorage.getInstance();
+        if (!fs.exists(file)) {
+            return null;
+        }
+        InputStream in = fs.openInputStream(file);
+        try {
+            return Util.readInputStream(in);
+        } finally {
+            Util.cleanup(in);
+        }
+    }
+    
+    private static boolean isValid(byte[] data) throws IOException {
+        return data != null && data.length >= HEADER_LENGTH 
+                && new DataInputStream(new ByteArrayInputStream(data, 0, HEADER_LENGTH)).readInt() == MAGIC
+                && data[4] == VERSION;
+    }
+    
+    /**
+     * Reads the file, keeping the codes that were never acknowledged.  Reading stops at
+     * the first record that is incomplete or fails its checksum, and the file is then
+     * rewritten so that new records aren't appended after it.
+     * 
+     * <p>If the file is missing or unreadable, but a complete temporary file from an 
+     * interrupted {@link #rewrite(byte[]) } is there, the temporary file becomes the 
+     * journal.  A temporary file next to a readable journal is left over from a rewrite
+     * that didn't get to replace the journal, and is deleted.</p>
+     */
+    private void replay() throws IOException {
+        FileSystemStorage fs = FileSystemStorage.getInstance();
+        String tmp = path + TMP_SUFFIX;
+        byte[] data = read(path);
+        if (isValid(data)) {
+            if (fs.exists(tmp)) {
+                fs.delete(tmp);
+            }
+        } else {
+            byte[] recovered = read(tmp);
+            if (isValid(recovered)) {
+                Log.p("Scan journal "+path+" was being rewritten.  Recovering it from "+tmp);
+                if (fs.exists(path)) {
+                    fs.delete(path);
+                }
+                fs.rename(tmp, path.substring(path.lastIndexOf(fs.getFileSystemSeparator()) + 1));
+                data = recovered;
+            }
+        }
+        synchronized (this) {
+            if (data == null) {
+                rewrite(encodePending());
+                return;
+            }
+            fileLength = data.length;
+            if (!isValid(data)) {
+                Log.p("Scan journal "+path+" is not readable.  Starting a new journal.");
+                rewrite(encodePending());
+                return;
+            }
+            int pos = HEADER_LENGTH;
+            long acknowledged = 0;
+            int records = 0;
+            while (pos + 8 <= data.length) {
+                int len = ((data[pos] & 0xff) << 24) | ((data[pos+1] & 0xff) << 16) | ((data[pos+2] & 0xff) << 8) | (data[pos+3] & 0xff);
+                if (len <= 0 || pos + 8 + len > data.length) {
+                    break;
+                }
+                DataInputStream body = new DataInputStream(new ByteArrayInputStream(data, pos + 4, len + 4));
+                body.skip(len);
+                if (body.readInt() != checksum(data, pos + 4, len)) {
+                    break;
+                }
+                body = new DataInputStream(new ByteArrayInputStream(data, pos + 4, len));
+                byte type = body.readByte();
+                long seq = body.readLong();
+                if (type == TYPE_SCAN) {
+                    long time = body.readLong();
+                    String format = readString(body);
+                    String contents = readString(body);
+                    int rawLen = body.readInt();
+                    byte[] raw = null;
+                    if (rawLen >= 0) {
+                        raw = new byte[rawLen];
+                        body.readFully(raw);
+                    }
+                    // A record that was committed twice is only kept once
+                    if (seq > acknowledged && (pending.isEmpty() || seq > pending.get(pending.size()-1).sequence)) {
+                        pending.add(new Entry(seq, time, new ScannedCode(contents, format, raw)));
+                    }
+                } else if (type == TYPE_ACK) {
+                    acknowledged = Math.max(acknowledged, seq);
+                    while (!pending.isEmpty() && pending.get(0).sequence <= acknowledged) {
+                        pending.remove(0);
+                        acknowledgedRecords++;
+                    }
+                }
+                nextSequence = Math.max(nextSequence, seq + 1);
+                records++;
+                pos += 8 + len;
+            }
+            if (pos != data.length) {
+                Log.p("Scan journal "+path+" ends with an incomplete record after "+records+" records.  Rewriting it.");
+                rewrite(encodePending());
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * Latency and count metrics for the code scanner.  Metrics are off by default.  Turn them 
+ * on with {@link CodeScanner#setMetricsEnabled(boolean) }, and read them with 
+ * {@link CodeScanner#getMetrics() }, which returns a snapshot that won't change after 
+ * it is returned.
+ * 
+ * <p>Each scan goes through the following phases.  The time of each phase is recorded 
+ * with {@link System#currentTimeMillis() } for the most recent scan:</p>
+ * <ul>
+ * <li>{@link #PHASE_REQUESTED} - {@literal scan()} or {@literal startSession()} was called.</li>
+ * <li>{@link #PHASE_PRESENTED} - The camera picker was shown.  On iOS this is when the 
+ *  presentation animation completes.</li>
+ * <li>{@link #PHASE_RECOGNIZED} - The native scanner recognized a code.</li>
+ * <li>{@link #PHASE_DISPATCHED} - The result reached {@link CodeScanner} after the hop 
+ *  to the main thread, and is about to be passed to the EDT.</li>
+ * <li>{@link #PHASE_DELIVERED} - The result was passed to the listener on the EDT.</li>
+ * </ul>
+ * 
+ * <p>The time from {@link #PHASE_RECOGNIZED} to {@link #PHASE_DELIVERED} is also kept 
+ * for every delivery, so percentiles of the scan-to-callback latency can be read with
+ * {@link #getLatencyPercentile(int) }.</p>
+ * 
+ * <h4>Usage</h4>
+ * <pre>{@code
+ * CodeScanner.getInstance().setMetricsEnabled(true);
+ * 
+ * // ... after some scans
+ * ScanMetrics m = CodeScanner.getInstance().getMetrics();
+ * Log.p("p50="+m.getLatencyPercentile(50)+"ms p99="+m.getLatencyPercentile(99)+"ms");
+ * }</pre>
+ *
+ * @author Steve Hannah
+ */
+public class ScanMetrics {
+    
+    /**
+     * Phase for when a scan or session was requested.
+     */
+    public static final int PHASE_REQUESTED = 0;
+    
+    /**
+     * Phase for when the camera picker was shown.
+     */
+    public static final int PHASE_PRESENTED = 1;
+    
+    /**
+     * Phase for when the native scanner recognized a code.
+     */
+    public static final int PHASE_RECOGNIZED = 2;
+    
+    /**
+     * Phase for when the result was about to be passed to the EDT.
+     */
+    public static final int PHASE_DISPATCHED = 3;
+    
+    /**
+     * Phase for when the result was passed to the listener.
+     */
+    public static final int PHASE_DELIVERED = 4;
+    
+    private static final int PHASE_COUNT = 5;
+    
+    /**
+     * Latencies are kept in 1ms buckets up to this value.  Longer latencies all go 
+     * in the last bucket.
+     */
+    private static final int MAX_TRACKED_MILLIS = 2000;
+    
+    private final long[] phaseTimes = new long[PHASE_COUNT];
+    private final int[] histogram;
+    private int scansRequested;
+    private int scansCanceled;
+    private int scanErrors;
+    private int modalBuffered;
+    private int codesRejected;
+    private int deliveries;
+    private int codesDelivered;
+    private long totalLatency;
+    private long maxLatency;
+    
+    ScanMetrics() {
+        histogram = new int[MAX_TRACKED_MILLIS + 1];
+    }
+    
+    private ScanMetrics(ScanMetrics src) {
+        System.arraycopy(src.phaseTimes, 0, phaseTimes, 0, PHASE_COUNT);
+        histogram = new int[src.histogram.length];
+        System.arraycopy(src.histogram, 0, histogram, 0, histogram.length);
+        scansRequested = src.scansRequested;
+        scansCanceled = src.scansCanceled;
+        scanErrors = src.scanErrors;
+        modalBuffered = src.modalBuffered;
+        codesRejected = src.codesRejected;
+        deliveries = src.deliveries;
+        codesDelivered = src.codesDelivered;
+        totalLatency = src.totalLatency;
+        maxLatency = src.maxLatency;
+    }
+    
+    synchronized ScanMetrics snapshot() {
+        return new ScanMetrics(this);
+    }
+    
+    /**
+     * Records the time of a phase for the current scan.
+     * @param phase One of the {@literal PHASE_XXX} constants.
+     * @return The recorded time.
+     */
+    synchronized long mark(int phase) {
+        long now = System.currentTimeMillis();
+        phaseTimes[phase] = now;
+        if (phase == PHASE_REQUESTED) {
+            scansRequested++;
+            for (int i=PHASE_PRESENTED; i<PHASE_COUNT; i++) {
+                phaseTimes[i] = 0;
+            }
+        }
+        return now;
+    }
+    
+    /**
+     * Records a delivery to a listener.  The recognition and dispatch times are passed
+     * in, rather than read from the last phase times, because in a session the next code
+     * may be recognized before this one reaches the EDT.
+     */
+    synchronized void delivered(long recognized, long dispatched, int codes) {
+        long now = System.currentTimeMillis();
+        phaseTimes[PHASE_RECOGNIZED] = recognized;
+        phaseTimes[PHASE_DISPATCHED] = dispatched;
+        phaseTimes[PHASE_DELIVERED] = now;
+        deliveries++;
+        codesDelivered += codes;
+        if (recognized > 0) {
+            long latency = now - recognized;
+            if (latency < 0) {
+                latency = 0;
+            }
+            totalLatency += latency;
+            if (latency > maxLatency) {
+                maxLatency = latency;
+            }
+            histogram[(int)Math.min(latency, MAX_TRACKED_MILLIS)]++;
+        }
+    }
+    
+    synchronized void canceled() {
+        scansCanceled++;
+    }
+    
+    synchronized void error() {
+        scanErrors++;
+    }
+    
+    synchronized void modalBuffered() {
+        modalBuffered++;
+    }
+    
+    synchronized void rejected(int count) {
+        codesRejected += count;
+    }
+    
+    synchronized long getRecognizedTime() {
+        return phaseTimes[PHASE_RECOGNIZED];
+    }
+    
+    /**
+     * Gets the time of a phase of the most recent scan.
+     * @param phase One of the {@literal PHASE_XXX} constants.
+     * @return The time in milliseconds, or 0 if the phase hasn't been reached.
+     */
+    public long getPhaseTime(int phase) {
+        return phaseTimes[phase];
+    }
+    
+    /**
+     * Gets the time between two phases of the most recent scan.  E.g. 
+     * {@literal getPhaseDuration(PHASE_REQUESTED, PHASE_PRESENTED)} is the time it took
+     * to show the camera.
+     * @param fromPhase The start phase.
+     * @param toPhase The end phase.
+     * @return The time in milliseconds, or -1 if either phase hasn't been reached.
+     */
+    public long getPhaseDuration(int fromPhase, int toPhase) {
+        long from = phaseTimes[fromPhase];
+        long to = phaseTimes[toPhase];
+        if (from == 0 || to == 0) {
+            return -1;
+        }
+        return to - from;
+    }
+    
+    /**
+     * Gets the number of scans and sessions that were requested.
+     * @return The number of requests.
+     */
+    public int getScansRequested() {
+        return scansRequested;
+    }
+    
+    /**
+     * Gets the number of scans and sessions that the user canceled.
+     * @return The number of cancellations.
+     */
+    public int getScansCanceled() {
+        return scansCanceled;
+    }
+    
+    /**
+     * Gets the number of errors that were reported to listeners.
+     * @return The number of errors.
+     */
+    public int getScanErrors() {
+        return scanErrors;
+    }
+    
+    /**
+     * Gets the number of single scans on iOS where a code was recognized before the 
+     * picker finished animating in.  These results are held back until the animation
+     * completes, so their latency includes the rest of the animation.
+     * @return The number of buffered results.
+     */
+    public int getModalBufferedCount() {
+        return modalBuffered;
+    }
+    
+    /**
+     * Gets the number of codes that were dropped by scan filters.
+     * @return The number of rejected codes.
+     * @see CodeScanner#addScanFilter(com.codename1.scandit.ScanFilter) 
+     */
+    public int getCodesRejected() {
+        return codesRejected;
+    }
+    
+    /**
+     * Gets the number of times results were passed to a listener.  A batch of codes 
+     * from one frame counts as one delivery.
+     * @return The number of deliveries.
+     */
+    public int getDeliveryCount() {
+        return deliveries;
+    }
+    
+    /**
+     * Gets the number of codes that were passed to listeners.
+     * @return The number of codes.
+     */
+    public int getCodesDelivered() {
+        return codesDelivered;
+    }
+    
+    /**
+     * Gets the average time from recognition to delivery.
+     * @return The average latency in milliseconds, or 0 if nothing was delivered.
+     */
+    public long getAverageLatency() {
+        return deliveries == 0 ? 0 : totalLatency / deliveries;
+    }
+    
+    /**
+     * Gets the longest time from recognition to delivery.
+     * @return The maximum latency in milliseconds.
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+    
+    /**
+     * Gets a percentile of the time from recognition to delivery.  The result has 
+     * a resolution of 1ms.  Latencies over 2 seconds are all counted as 2 seconds.
+     * @param percentile The percentile between 0 and 100.  E.g. 50 for the median, or 99.
+     * @return The latency in milliseconds, or 0 if nothing was delivered.
+     */
+    public int getLatencyPercentile(int percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        int total = 0;
+        for (int count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, ((long)total * percentile + 99) / 100);
+        long seen = 0;
+        for (int i=0; i<histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return i;
+            }
+        }
+        return MAX_TRACKED_MILLIS;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanMetrics{requested="+scansRequested+", deliveries="+deliveries
+                +", codes="+codesDelivered+", canceled="+scansCanceled+", errors="+scanErrors
+                +", modalBuffered="+modalBuffered+", rejected="+codesRejected+", p50="+getLatencyPercentile(50)
+                +"ms, p99="+getLatencyPercentile(99)+"ms, max="+maxLatency+"ms}";
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * An immutable set of camera and recognition settings that trade scanning speed against
+ * battery use.  A profile is applied with {@link CodeScanner#setProfile(com.codename1.scandit.ScanProfile) },
+ * and takes effect on the next scan or session.
+ * 
+ * <p>{@link #LOW_POWER} suits devices that scan all day, where codes are presented one 
+ * at a time.  {@link #HIGH_SPEED} suits codes that move past the camera quickly, e.g. on
+ * a conveyor.  Profiles can be adjusted with the {@literal withXXX()} methods:</p>
+ * 
+ * <pre>{@code
+ * CodeScanner.getInstance().setProfile(ScanProfile.HIGH_SPEED.withCodeDuplicateFilter(2000));
+ * }</pre>
+ * 
+ * @author Steve Hannah
+ */
+public final class ScanProfile {
+    
+    /**
+     * Use the platform's default camera resolution.
+     */
+    public static final int RESOLUTION_DEFAULT = 0;
+    
+    /**
+     * Prefer a standard camera resolution (usually 720p), which uses less power.
+     */
+    public static final int RESOLUTION_STANDARD = 1;
+    
+    /**
+     * Prefer a high camera resolution (usually 1080p) where the device supports it.  
+     * This helps with small or dense codes, and with codes that are far from the camera, 
+     * but uses more power.
+     */
+    public static final int RESOLUTION_HIGH = 2;
+    
+    /**
+     * Duplicate filter value that reports each code only once per scan session.
+     */
+    public static final int DUPLICATE_FILTER_ONCE = -1;
+    
+    /**
+     * Duplicate filter value that leaves the recognition engine's own default in place.
+     */
+    public static final int DUPLICATE_FILTER_DEFAULT = -2;
+    
+    /**
+     * The platform's default settings.
+     */
+    public static final ScanProfile DEFAULT = new ScanProfile(RESOLUTION_DEFAULT, 0, DUPLICATE_FILTER_DEFAULT, null);
+    
+    /**
+     * Standard resolution at up to 15 frames per second, scanning a band through the 
+     * center of the frame.  A code that stays in view is reported again after a second.
+     */
+    public static final ScanProfile LOW_POWER = new ScanProfile(RESOLUTION_STANDARD, 15, 1000, ScanArea.band(0.3f));
+    
+    /**
+     * High resolution at up to 60 frames per second, scanning the whole frame.  A code 
+     * that stays in view is reported again after half a second.
+     */
+    public static final ScanProfile HIGH_SPEED = new ScanProfile(RESOLUTION_HIGH, 60, 500, ScanArea.FULL);
+    
+    private final int resolution;
+    private final int maxFrameRate;
+    private final int codeDuplicateFilter;
+    private final ScanArea scanArea;
+    
+    private ScanProfile(int resolution, int maxFrameRate, int codeDuplicateFilter, ScanArea scanArea) {
+        if (resolution < RESOLUTION_DEFAULT || resolution > RESOLUTION_HIGH) {
+            throw new IllegalArgumentException("Unknown resolution "+resolution);
+        }
+        if (maxFrameRate < 0) {
+            throw new IllegalArgumentException("maxFrameRate can't be negative");
+        }
+        if (codeDuplicateFilter < DUPLICATE_FILTER_DEFAULT) {
+            throw new IllegalArgumentException("Invalid code duplicate filter "+codeDuplicateFilter);
+        }
+        this.resolution = resolution;
+        this.maxFrameRate = maxFrameRate;
+        this.codeDuplicateFilter = codeDuplicateFilter;
+        this.scanArea = scanArea;
+    }
+    
+    /**
+     * Returns a copy of this profile with a different camera resolution preference.
+     * @param resolution {@link #RESOLUTION_DEFAULT}, {@link #RESOLUTION_STANDARD} or {@link #RESOLUTION_HIGH}.
+     * @return The new profile.  This profile is not modified.
+     */
+    public ScanProfile withResolution(int resolution) {
+        return new ScanProfile(resolution, maxFrameRate, codeDuplicateFilter, scanArea);
+    }
+    
+    /**
+     * Returns a copy of this profile with a different maximum frame rate.  A lower frame 
+     * rate uses less power, at the cost of taking longer to find a code.
+     * @param fps The maximum number of frames per second to process, or 0 for the platform default.
+     * @return The new profile.  This profile is not modified.
+     */
+    public ScanProfile withMaxFrameRate(int fps) {
+        return new ScanProfile(resolution, fps, codeDuplicateFilter, scanArea);
+    }
+    
+    /**
+     * Returns a copy of this profile with a different duplicate filter.  Unlike 
+     * {@link CodeScanner#setDuplicateFilter(int, int) }, this filter is applied by the 
+     * recognition engine, so duplicates are never passed to the app at all.
+     * @param millis The time in milliseconds before the same code is reported again, 0 to 
+     * report it in every frame, {@link #DUPLICATE_FILTER_ONCE} to report it only once per session,
+     * or {@link #DUPLICATE_FILTER_DEFAULT} for the platform default.
+     * @return The new profile.  This profile is not modified.
+     */
+    public ScanProfile withCodeDuplicateFilter(int millis) {
+        return new ScanProfile(resolution, maxFrameRate, millis, scanArea);
+    }
+    
+    /**
+     * Returns a copy of this profile with a different scanning area.  An area set with 
+     * {@link CodeScanner#setScanArea(com.codename1.scandit.ScanArea) } takes precedence.
+     * @param area The area, or null for the platform default.
+     * @return The new profile.  This profile is not modified.
+     */
+    public ScanProfile withScanArea(ScanArea area) {
+        return new ScanProfile(resolution, maxFrameRate, codeDuplicateFilter, area);
+    }
+    
+    /**
+     * Gets the camera resolution preference.
+     * @return {@link #RESOLUTION_DEFAULT}, {@link #RESOLUTION_STANDARD} or {@link #RESOLUTION_HIGH}.
+     */
+    public int getResolution() {
+        return resolution;
+    }
+    
+    /**
+     * Gets the maximum number of frames per second to process.
+     * @return The frame rate, or 0 for the platform default.
+     */
+    public int getMaxFrameRate() {
+        return maxFrameRate;
+    }
+    
+    /**
+     * Gets the time before the same code is reported again.
+     * @return The time in milliseconds, 0 if codes are reported in every frame, 
+     * {@link #DUPLICATE_FILTER_ONCE} or {@link #DUPLICATE_FILTER_DEFAULT}.
+     */
+    public int getCodeDuplicateFilter() {
+        return codeDuplicateFilter;
+    }
+    
+    /**
+     * Gets the scanning area.
+     * @return The area, or null for the platform default.
+     */
+    public ScanArea getScanArea() {
+        return scanArea;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ScanProfile)) {
+            return false;
+        }
+        ScanProfile p = (ScanProfile)obj;
+        return p.resolution == resolution && p.maxFrameRate == maxFrameRate 
+                && p.codeDuplicateFilter == codeDuplicateFilter
+                && (scanArea == null ? p.scanArea == null : scanArea.equals(p.scanArea));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = resolution;
+        h = 31 * h + maxFrameRate;
+        h = 31 * h + codeDuplicateFilter;
+        return 31 * h + (scanArea == null ? 0 : scanArea.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return "ScanProfile[resolution="+resolution+", maxFrameRate="+maxFrameRate
+                +", codeDuplicateFilter="+codeDuplicateFilter+", scanArea="+scanArea+"]";
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import com.codename1.ui.Display;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a recorded sequence of codes through the same entry points that the native 
+ * scanners use, so that duplicate filtering, dispatch and delivery to the EDT can be 
+ * exercised and measured without a camera.
+ * 
+ * <p>A replay feeds a session, just like a camera that keeps recognizing codes.  The 
+ * codes are fed at a fixed rate, or as fast as possible, optionally several codes per 
+ * "frame" to simulate labels with multiple codes.  Codes that are rejected by the
+ * {@link ScanFilter}s are dropped before dispatch, as they are by the native scanners.</p>
+ * 
+ * <h4>Usage</h4>
+ * <pre>{@code
+ * ScanReplay replay = ScanReplay.parse(
+ *         "EAN13:5901234123457\n"
+ *       + "CODE128:ABC-123\n"
+ *       + "QR:https://www.codenameone.com\n");
+ * replay.setRate(30);
+ * replay.setRepeat(100);
+ * ScanSession session = replay.start(listener);
+ * }</pre>
+ *
+ * @author Steve Hannah
+ */
+public class ScanReplay {
+    private final List<ScannedCode> codes;
+    private int rate;
+    private int batchSize = 1;
+    private int repeat = 1;
+    private volatile boolean running;
+    private volatile int fed;
+    
+    /**
+     * Creates a replay of the given codes.
+     * @param codes The codes to replay, in order.
+     */
+    public ScanReplay(List<ScannedCode> codes) {
+        if (codes.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to replay");
+        }
+        this.codes = new ArrayList<ScannedCode>(codes);
+    }
+    
+    /**
+     * Creates a replay from a recording with one code per line, in the form 
+     * {@literal FORMAT:contents}.  Empty lines and lines that start with {@literal #}
+     * are skipped.
+     * @param recording The recording.
+     * @return The replay.
+     */
+    public static ScanReplay parse(String recording) {
+        List<ScannedCode> out = new ArrayList<ScannedCode>();
+        int pos = 0;
+        int len = recording.length();
+        while (pos < len) {
+            int end = recording.indexOf('\n', pos);
+            if (end < 0) {
+                end = len;
+            }
+            String line = recording.substring(pos, end).trim();
+            pos = end + 1;
+            if (line.length() == 0 || line.charAt(0) == '#') {
+                continue;
+            }
+            int sep = line.indexOf(':');
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Expected FORMAT:contents but found "+line);
+            }
+            String contents = line.substring(sep + 1);
+            out.add(new ScannedCode(contents, line.substring(0, sep), utf8(contents)));
+        }
+        return new ScanReplay(out);
+    }
+    
+    /**
+     * Encodes the contents of a recorded code, so that the raw bytes are the same on 
+     * every platform, whatever its default encoding.
+     */
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            // Every platform supports UTF-8
+            throw new RuntimeException(ex.getMessage());
+        }
+    }
+    
+    /**
+     * Sets the rate at which codes are fed.
+     * @param codesPerSecond The number of codes per second, or 0 to feed them as fast as possible.
+     */
+    public void setRate(int codesPerSecond) {
+        if (codesPerSecond < 0) {
+            throw new IllegalArgumentException("Rate can't be negative");
+        }
+        this.rate = codesPerSecond;
+    }
+    
+    /**
+     * Sets the number of codes that are fed together, as if they were recognized in 
+     * the same frame.  The default is 1.
+     * @param size The number of codes per frame.
+     */
+    public void setBatchSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.batchSize = size;
+    }
+    
+    /**
+     * Sets the number of times the sequence is replayed.  The default is 1.
+     * @param times The number of times to replay the codes.
+     */
+    public void setRepeat(int times) {
+        if (times < 1) {
+            throw new IllegalArgumentException("Repeat must be at least 1");
+        }
+        this.repeat = times;
+    }
+    
+    /**
+     * Gets the number of codes that will be fed by a complete replay.
+     * @return The number of codes.
+     */
+    public int getTotalCount() {
+        return codes.size() * repeat;
+    }
+    
+    /**
+     * Gets the number of codes fed so far.
+     * @return The number of codes fed.
+     */
+    public int getFedCount() {
+        return fed;
+    }
+    
+    /**
+     * Checks whether the replay is still feeding codes.
+     * @return True while running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Starts a session and feeds it on a background thread.  The session stays active
+     * when the replay is finished, until it is stopped.
+     * @param listener Callback that receives each scanned code.
+     * @return The session, or null if another session or scan is already running.
+     */
+    public ScanSession start(ScanResult listener) {
+        final ScanSession session = CodeScanner.getInstance().startReplaySession(listener);
+        if (session == null) {
+            return null;
+        }
+        final List<List<ScannedCode>> batches = createBatches();
+        running = true;
+        Display.getInstance().startThread(()->feed(session, batches), "ScanReplay").start();
+        return session;
+    }
+    
+    /**
+     * Starts a session and feeds it on the current thread, returning when all of the 
+     * codes have been fed.  Codes are still delivered to the listener on the EDT, so
+     * this must not be called on the EDT.  This is useful for benchmarks that measure 
+     * the feeding thread.
+     * @param listener Callback that receives each scanned code.
+     * @return The session, or null if another session or scan is already running.
+     */
+    public ScanSession run(ScanResult listener) {
+        ScanSession session = CodeScanner.getInstance().startReplaySession(listener);
+        if (session == null) {
+            return null;
+        }
+        List<List<ScannedCode>> batches = createBatches();
+        running = true;
+        feed(session, batches);
+        return session;
+    }
+    
+    /**
+     * Answers a single scan with the next code of the replay, as if it was scanned 
+     * with {@link CodeScanner#scan(int, com.codename1.scandit.ScanResult) }.  The 
+     * result is delivered on the EDT.  Codes rejected by the {@link ScanFilter}s are 
+     * skipped, and the scan is canceled if every code is rejected.
+     * @param listener Callback to handle the scanning result.
+     */
+    public void scanNext(ScanResult listener) {
+        int token = CodeScanner.getInstance().registerReplayScan(listener);
+        if (token < 0) {
+            return;
+        }
+        // Like a camera, keep going until a code is accepted
+        for (int i=0; i<codes.size(); i++) {
+            List<ScannedCode> batch = new ArrayList<ScannedCode>(1);
+            batch.add(codes.get(fed % codes.size()));
+            fed++;
+            CodeScanner.markPhase(ScanMetrics.PHASE_RECOGNIZED);
+            batch = CodeScanner.filterCodes(batch);
+            if (batch != null) {
+                CodeScanner.scanBatchCompletedCallback(token, batch);
+                return;
+            }
+        }
+        // Every code was rejected
+        CodeScanner.scanCanceledCallback(token);
+    }
+    
+    /**
+     * Stops feeding codes.  The session is not stopped.
+     */
+    public void stop() {
+        running = false;
+    }
+    
+    /**
+     * Splits the codes into batches ahead of time, so that the replay itself doesn't 
+     * allocate while feeding.
+     */
+    private List<List<ScannedCode>> createBatches() {
+        int size = codes.size();
+        List<List<ScannedCode>> out = new ArrayList<List<ScannedCode>>((size + batchSize - 1) / batchSize);
+        for (int i=0; i<size; i+=batchSize) {
+            int end = Math.min(size, i + batchSize);
+            out.add(new ArrayList<ScannedCode>(codes.subList(i, end)));
+        }
+        return out;
+    }
+    
+    private void feed(ScanSession session, List<List<ScannedCode>> batches) {
+        long start = System.currentTimeMillis();
+        int sent = 0;
+        try {
+            for (int r=0; r<repeat; r++) {
+                int len = batches.size();
+                for (int i=0; i<len; i++) {
+                    if (!running || !session.isActive()) {
+                        return;
+                    }
+                    if (rate > 0) {
+                        long due = start + (long)sent * 1000 / rate;
+                        long wait = due - System.currentTimeMillis();
+                        if (wait > 0) {
+                            try {
+                                Thread.sleep(wait);
+                            } catch (InterruptedException ex) {
+                                return;
+                            }
+                        }
+                    }
+                    List<ScannedCode> batch = batches.get(i);
+                    CodeScanner.markPhase(ScanMetrics.PHASE_RECOGNIZED);
+                    List<ScannedCode> accepted = CodeScanner.filterCodes(batch);
+                    if (accepted != null) {
+                        CodeScanner.scanBatchCompletedCallback(ScanDispatcher.SESSION_TOKEN, accepted);
+                    }
+                    sent += batch.size();
+                    fed = sent;
+                }
+            }
+        } finally {
+            running = false;
+        }
+    }
+}
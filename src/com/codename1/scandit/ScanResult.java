@@ -32,9 +32,11 @@ public interface ScanResult {
     /**
      * Called upon a successful scan operation
      * 
-     * @param contents the contents of the data
+     * @param contents the contents of the data, or null if text payloads are disabled 
+     * with {@link CodeScanner#setPayloadFormats(int) }
      * @param formatName the format of the scan
-     * @param rawBytes the bytes of data
+     * @param rawBytes the bytes of data, or null if they are not available or raw payloads
+     * are disabled
      */
     public void scanCompleted(String contents, String formatName, byte[] rawBytes);
     
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * A continuous scanning session.  Unlike {@link CodeScanner#scan(java.util.Collection, com.codename1.scandit.ScanResult) },
+ * which closes the scanner after the first code, a session keeps the camera running
+ * and passes every recognized code to its listener until {@link #stop() } is called, or
+ * the user cancels the scanner.
+ *
+ * <h4>Usage</h4>
+ * <pre>{@code
+ * ScanSession session = CodeScanner.getInstance().startSession(
+ *         CodeScanner.SYMBOLOGY_CODE128,
+ *         new ScanResult() {
+ *     public void scanCompleted(String contents, String formatName, byte[] rawBytes) {
+ *         items.add(contents);
+ *     }
+ *     public void scanCanceled() {
+ *         // The user closed the scanner
+ *     }
+ *     public void scanError(int errorCode, String message) {
+ *         Log.p("Scan error "+errorCode+": "+message);
+ *     }
+ * });
+ *
+ * // ... later
+ * session.stop();
+ * }</pre>
+ *
+ * <p>{@link ScanResult#scanCompleted(java.lang.String, java.lang.String, byte[]) } will be called
+ * once for each code.  {@link ScanResult#scanCanceled() } is only called if the user closes the
+ * scanner.  It is not called when the session is closed with {@link #stop() }.</p>
+ *
+ * @author Steve Hannah
+ */
+public class ScanSession {
+    private final ScanResult listener;
+    private boolean active = true;
+    private int scanCount;
+    // The ID of the ScannerView that this session scans in, or 0
+    private int viewId;
+    private boolean replay;
+
+    ScanSession(ScanResult listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the listener that receives the scan results for this session.
+     * @return The listener.
+     */
+    ScanResult getListener() {
+        return listener;
+    }
+
+    /**
+     * Checks whether this session is still running.
+     * @return True if the scanner is still running for this session.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Gets the number of codes that have been delivered to the listener in this session.
+     * @return The number of scanned codes.
+     */
+    public synchronized int getScanCount() {
+        return scanCount;
+    }
+
+    synchronized void incrementScanCount(int count) {
+        scanCount += count;
+    }
+
+    void setActive(boolean active) {
+        this.active = active;
+    }
+    
+    /**
+     * Checks whether this session scans in a {@link ScannerView} rather than in a 
+     * separate scanning window.
+     * @return True for {@link ScannerView} sessions.
+     */
+    boolean isEmbedded() {
+        return viewId != 0;
+    }
+    
+    /**
+     * Gets the ID of the {@link ScannerView} that this session scans in.
+     * @return The view ID, or 0 if the session doesn't scan in a view.
+     */
+    int getViewId() {
+        return viewId;
+    }
+    
+    void setViewId(int viewId) {
+        this.viewId = viewId;
+    }
+    
+    /**
+     * Checks whether this session is fed by a {@link ScanReplay} rather than a 
+     * native scanner.
+     * @return True for replay sessions.
+     */
+    boolean isReplay() {
+        return replay;
+    }
+    
+    void setReplay(boolean replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * Stops this session and closes the scanner.  This does nothing if the session
+     * is already stopped.
+     */
+    public void stop() {
+        CodeScanner.getInstance().stopSession(this);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * A single code that was recognized by the scanner.  Codes are delivered in batches
+ * to {@link BatchScanResult#scanBatchCompleted(java.util.List) }.
+ *
+ * @author Steve Hannah
+ */
+public class ScannedCode {
+    private final String contents;
+    private final String formatName;
+    private final byte[] rawBytes;
+    private boolean gs1Parsed;
+    private Gs1Data gs1Data;
+
+    /**
+     * Creates a new scanned code.
+     * @param contents the contents of the data
+     * @param formatName the format of the scan
+     * @param rawBytes the bytes of data
+     */
+    public ScannedCode(String contents, String formatName, byte[] rawBytes) {
+        this.contents = contents;
+        this.formatName = formatName;
+        this.rawBytes = rawBytes;
+    }
+
+    /**
+     * Gets the contents of the data.
+     * @return The contents, or null if text payloads are disabled.
+     * @see CodeScanner#setPayloadFormats(int) 
+     */
+    public String getContents() {
+        return contents;
+    }
+
+    /**
+     * Gets the format of the scan.  E.g. "EAN13"
+     * @return The symbology name.
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    /**
+     * Gets the bytes of data.  The array is not copied, so it should not be modified.
+     * @return The raw bytes, or null if they are not available or raw payloads are disabled.
+     */
+    public byte[] getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * Gets the GS1 elements of the code, e.g. the GTIN, batch and expiry date of a 
+     * GS1-128 or GS1 DataMatrix code.  The code is parsed the first time this is called,
+     * unless {@link CodeScanner#setGs1Parsing(boolean) } parsed it before it was delivered.
+     * @return The elements, or null if the code is not a GS1 element string.
+     */
+    public Gs1Data getGs1Data() {
+        if (!gs1Parsed) {
+            gs1Data = contents != null ? Gs1Parser.parse(contents) : Gs1Parser.parse(rawBytes);
+            gs1Parsed = true;
+        }
+        return gs1Data;
+    }
+
+    @Override
+    public String toString() {
+        return formatName+": "+contents;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import com.codename1.ui.Container;
+import com.codename1.ui.Label;
+import com.codename1.ui.PeerComponent;
+import com.codename1.ui.layouts.BorderLayout;
+import java.util.Collection;
+
+/**
+ * A component that shows the live scanner inside a form.  This lets the user keep
+ * working with the rest of the form while scanning, without opening a separate
+ * scanning window.
+ * 
+ * <h4>Usage</h4>
+ * <pre>{@code
+ * ScannerView scanner = new ScannerView(
+ *         CodeScanner.createSymbologySet(CodeScanner.SYMBOLOGY_CODE128),
+ *         new ScanResult() {
+ *     public void scanCompleted(String contents, String formatName, byte[] rawBytes) {
+ *         itemList.add(new Label(contents));
+ *         itemList.revalidate();
+ *     }
+ *     public void scanCanceled() {}
+ *     public void scanError(int errorCode, String message) {
+ *         Log.p("Scan error "+errorCode+": "+message);
+ *     }
+ * });
+ * form.add(BorderLayout.NORTH, scanner);
+ * form.add(BorderLayout.CENTER, itemList);
+ * form.show();
+ * scanner.start();
+ * }</pre>
+ * 
+ * <p>Scanning works like a {@link ScanSession}: every recognized code is passed to 
+ * the listener until {@link #stop() } is called.  The form is not revalidated after
+ * each code, so the listener should only update the components that it changes.
+ * Scanning stops automatically when the view is removed from the form.</p>
+ * 
+ * <p>Each view has its own native picker, which is created when the view is added to 
+ * a form that is shown, and released when it is removed.  Several views can be in the 
+ * UI at once, but only one of them can scan at a time, since the view counts as a 
+ * session.  It can't scan while another session or scan is in progress.</p>
+ *
+ * @author Steve Hannah
+ */
+public class ScannerView extends Container {
+    private final int symbologyMask;
+    private final ScanResult listener;
+    private final int viewId;
+    private PeerComponent peer;
+    private boolean startWhenReady;
+    private boolean waitingForScanner;
+    private ScanSession session;
+    
+    /**
+     * Creates a new scanner view.
+     * @param symbologies The symbologies to use.  See {@literal SYMBOLOGY_XXX} constants in {@link CodeScanner}
+     * @param listener Callback that receives each scanned code.
+     */
+    public ScannerView(Collection<Integer> symbologies, ScanResult listener) {
+        this(SymbologySet.toMask(symbologies), listener);
+    }
+    
+    /**
+     * Creates a new scanner view.
+     * @param symbologies The symbologies to use.
+     * @param listener Callback that receives each scanned code.
+     */
+    public ScannerView(SymbologySet symbologies, ScanResult listener) {
+        this(symbologies.getMask(), listener);
+    }
+    
+    /**
+     * Creates a new scanner view.
+     * @param symbologyMask The symbologies to use, OR'd together.  E.g. {@literal SYMBOLOGY_EAN13 | SYMBOLOGY_QR}
+     * @param listener Callback that receives each scanned code.
+     */
+    public ScannerView(int symbologyMask, ScanResult listener) {
+        super(new BorderLayout());
+        this.symbologyMask = symbologyMask;
+        this.listener = listener;
+        viewId = CodeScanner.getInstance().nextViewId();
+    }
+    
+    /**
+     * Starts scanning.  This does nothing if the view is already scanning.  If the 
+     * view isn't in a form that is shown yet, or the scanner is still being loaded,
+     * scanning starts when it is ready.
+     */
+    public void start() {
+        if (isScanning()) {
+            return;
+        }
+        if (peer == null) {
+            startWhenReady = true;
+            return;
+        }
+        session = CodeScanner.getInstance().startViewSession(viewId, symbologyMask, listener);
+    }
+    
+    /**
+     * Stops scanning.  The camera preview is stopped, but the view stays in the form
+     * so that scanning can be resumed with {@link #start() }.
+     */
+    public void stop() {
+        startWhenReady = false;
+        if (session != null) {
+            session.stop();
+            session = null;
+        }
+    }
+    
+    /**
+     * Checks whether the view is currently scanning.
+     * @return True if the view is scanning.
+     */
+    public boolean isScanning() {
+        return session != null && session.isActive();
+    }
+    
+    /**
+     * Gets the session for the current scan.
+     * @return The session, or null if the view isn't scanning.
+     */
+    public ScanSession getSession() {
+        return session;
+    }
+
+    @Override
+    protected void initComponent() {
+        super.initComponent();
+        if (peer != null || waitingForScanner) {
+            return;
+        }
+        if (!CodeScanner.isReady()) {
+            // Don't block the EDT while the scanner is loaded.  The view stays empty
+            // until the peer can be created.
+            waitingForScanner = true;
+            CodeScanner.prepareAsync(loaded->{
+                waitingForScanner = false;
+                if (isInitialized() && peer == null) {
+                    createPeer();
+                    revalidate();
+                }
+            });
+            return;
+        }
+        createPeer();
+    }
+    
+    private void createPeer() {
+        removeAll();
+        peer = CodeScanner.getInstance().createScannerPeer(viewId);
+        if (peer == null) {
+            startWhenReady = false;
+            add(BorderLayout.CENTER, new Label("Scanner not supported"));
+            return;
+        }
+        add(BorderLayout.CENTER, peer);
+        if (startWhenReady) {
+            startWhenReady = false;
+            start();
+        }
+    }
+
+    @Override
+    protected void deinitialize() {
+        stop();
+        if (peer != null) {
+            // The picker is released, and replaced with a new one if the view is
+            // shown again
+            peer = null;
+            CodeScanner.getInstance().releaseScannerPeer(viewId);
+        }
+        super.deinitialize();
+    }
+}
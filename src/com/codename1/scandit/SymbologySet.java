@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable set of symbologies, stored as a single bit mask of the
+ * {@literal SYMBOLOGY_XXX} constants in {@link CodeScanner}.  Since the whole set is
+ * a single int, passing it to {@link CodeScanner#scan(com.codename1.scandit.SymbologySet, com.codename1.scandit.ScanResult) }
+ * doesn't allocate anything, and two sets can be compared cheaply.
+ * 
+ * <pre>{@code
+ * static final SymbologySet LABELS = SymbologySet.of(CodeScanner.SYMBOLOGY_CODE128, CodeScanner.SYMBOLOGY_DATAMATRIX);
+ * 
+ * CodeScanner.getInstance().scan(LABELS, callback);
+ * }</pre>
+ *
+ * @author Steve Hannah
+ */
+public final class SymbologySet {
+    
+    /**
+     * The empty set.
+     */
+    public static final SymbologySet EMPTY = new SymbologySet(0);
+    
+    /**
+     * QR codes only.  Used by {@link CodeScanner#scanQRCode(com.codename1.scandit.ScanResult) }.
+     */
+    public static final SymbologySet QR_CODE = new SymbologySet(CodeScanner.SYMBOLOGY_QR);
+    
+    /**
+     * The common bar codes used by {@link CodeScanner#scanBarCode(com.codename1.scandit.ScanResult) }.
+     */
+    public static final SymbologySet BAR_CODES = new SymbologySet(
+            CodeScanner.SYMBOLOGY_EAN13 
+            | CodeScanner.SYMBOLOGY_UPC12
+            | CodeScanner.SYMBOLOGY_EAN8
+            | CodeScanner.SYMBOLOGY_UPCE
+            | CodeScanner.SYMBOLOGY_CODE39
+            | CodeScanner.SYMBOLOGY_CODE128
+            | CodeScanner.SYMBOLOGY_ITF
+            | CodeScanner.SYMBOLOGY_DATAMATRIX);
+    
+    private final int mask;
+    
+    private SymbologySet(int mask) {
+        this.mask = mask;
+    }
+    
+    /**
+     * Creates a set from a bit mask of symbologies.
+     * @param mask The symbologies OR'd together.  E.g. {@literal SYMBOLOGY_EAN13 | SYMBOLOGY_QR}
+     * @return The set.
+     */
+    public static SymbologySet fromMask(int mask) {
+        return mask == 0 ? EMPTY : new SymbologySet(mask);
+    }
+    
+    /**
+     * Creates a set containing the given symbologies.
+     * @param symbologies The symbologies.  See the {@literal SYMBOLOGY_XXX} constants in {@link CodeScanner}
+     * @return The set.
+     */
+    public static SymbologySet of(int... symbologies) {
+        return fromMask(toMask(symbologies));
+    }
+    
+    /**
+     * Creates a set containing the symbologies in a collection.
+     * @param symbologies The symbologies.
+     * @return The set.
+     */
+    public static SymbologySet of(Collection<Integer> symbologies) {
+        return fromMask(toMask(symbologies));
+    }
+    
+    /**
+     * Combines symbologies into a bit mask.
+     * @param symbologies The symbologies.
+     * @return The mask.
+     */
+    static int toMask(int... symbologies) {
+        int mask = 0;
+        for (int sym : symbologies) {
+            mask |= sym;
+        }
+        return mask;
+    }
+    
+    /**
+     * Combines a collection of symbologies into a bit mask.
+     * @param symbologies The symbologies, or null.
+     * @return The mask.
+     */
+    static int toMask(Collection<Integer> symbologies) {
+        int mask = 0;
+        if (symbologies != null) {
+            for (int sym : symbologies) {
+                mask |= sym;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Gets the bit mask of the symbologies in this set.
+     * @return The mask.
+     */
+    public int getMask() {
+        return mask;
+    }
+    
+    /**
+     * Checks whether this set contains a symbology.
+     * @param symbology The symbology.  See the {@literal SYMBOLOGY_XXX} constants in {@link CodeScanner}
+     * @return True if the symbology is in this set.
+     */
+    public boolean contains(int symbology) {
+        return symbology != 0 && (mask & symbology) == symbology;
+    }
+    
+    /**
+     * Returns a set with the given symbologies added.
+     * @param symbologies The symbologies to add.
+     * @return The new set.  This set is not modified.
+     */
+    public SymbologySet with(int... symbologies) {
+        int m = mask | toMask(symbologies);
+        return m == mask ? this : new SymbologySet(m);
+    }
+    
+    /**
+     * Returns a set with the given symbologies removed.
+     * @param symbologies The symbologies to remove.
+     * @return The new set.  This set is not modified.
+     */
+    public SymbologySet without(int... symbologies) {
+        int m = mask & ~toMask(symbologies);
+        return m == mask ? this : fromMask(m);
+    }
+    
+    /**
+     * Checks whether this set is empty.
+     * @return True if the set contains no symbologies.
+     */
+    public boolean isEmpty() {
+        return mask == 0;
+    }
+    
+    /**
+     * Gets the number of symbologies in this set.
+     * @return The number of symbologies.
+     */
+    public int size() {
+        int count = 0;
+        for (int m = mask; m != 0; m &= m - 1) {
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the symbologies in this set as a list, for use with the methods that 
+     * take a collection.
+     * @return A new list containing the symbologies.
+     */
+    public List<Integer> toList() {
+        List<Integer> out = new ArrayList<Integer>(size());
+        for (int m = mask; m != 0; m &= m - 1) {
+            out.add(m & -m);
+        }
+        return out;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SymbologySet && ((SymbologySet)obj).mask == mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return "SymbologySet[0x"+Integer.toHexString(mask)+"]";
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2012, Codename One and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Codename One designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Codename One through http://www.codenameone.com/ if you
+ * need additional information or have any questions.
+ */
+package com.codename1.scandit;
+
+/**
+ * Immutable recognition settings for a single symbology.  Restricting a symbology to 
+ * the code lengths and checksums that are actually in use makes decoding faster, and
+ * cuts down on false positives, especially for Code 128, Code 39 and ITF.
+ * 
+ * <p>Settings are registered with {@link CodeScanner#setSymbologySettings(com.codename1.scandit.SymbologySettings) },
+ * and are applied whenever the symbology is enabled in a scan or session.</p>
+ * 
+ * <pre>{@code
+ * CodeScanner.getInstance().setSymbologySettings(
+ *         SymbologySettings.of(CodeScanner.SYMBOLOGY_ITF).withActiveSymbolCounts(6, 14));
+ * CodeScanner.getInstance().setSymbologySettings(
+ *         SymbologySettings.of(CodeScanner.SYMBOLOGY_CODE39)
+ *                 .withActiveSymbolCountRange(8, 12)
+ *                 .withChecksums(SymbologySettings.CHECKSUM_MOD_43)
+ *                 .withExtension("full_ascii", true));
+ * }</pre>
+ * 
+ * @author Steve Hannah
+ */
+public final class SymbologySettings {
+    
+    /**
+     * Modulo 10 checksum.  Used by MSI Plessey and ITF.
+     */
+    public static final int CHECKSUM_MOD_10 = 0x1;
+    
+    /**
+     * Modulo 11 checksum.  Used by MSI Plessey and Code 11.
+     */
+    public static final int CHECKSUM_MOD_11 = 0x2;
+    
+    /**
+     * Modulo 16 checksum.  Used by Codabar.
+     */
+    public static final int CHECKSUM_MOD_16 = 0x4;
+    
+    /**
+     * Modulo 43 checksum.  Used by Code 39.
+     */
+    public static final int CHECKSUM_MOD_43 = 0x8;
+    
+    /**
+     * Modulo 47 checksum.  Used by Code 93.
+     */
+    public static final int CHECKSUM_MOD_47 = 0x10;
+    
+    /**
+     * Modulo 103 checksum.  Used by Code 128.
+     */
+    public static final int CHECKSUM_MOD_103 = 0x20;
+    
+    /**
+     * Modulo 10 twice.  Used by MSI Plessey.
+     */
+    public static final int CHECKSUM_MOD_1010 = 0x40;
+    
+    /**
+     * Modulo 11 followed by modulo 10.  Used by MSI Plessey.
+     */
+    public static final int CHECKSUM_MOD_1110 = 0x80;
+    
+    private static final int ALL_CHECKSUMS = 0xff;
+    
+    private final int symbology;
+    private final short[] activeSymbolCounts;
+    private final int checksums;
+    private final int colorInverted;
+    private final String[] extensions;
+    private final boolean[] extensionsEnabled;
+    
+    private SymbologySettings(int symbology, short[] activeSymbolCounts, int checksums, 
+            int colorInverted, String[] extensions, boolean[] extensionsEnabled) {
+        this.symbology = symbology;
+        this.activeSymbolCounts = activeSymbolCounts;
+        this.checksums = checksums;
+        this.colorInverted = colorInverted;
+        this.extensions = extensions;
+        this.extensionsEnabled = extensionsEnabled;
+    }
+    
+    /**
+     * Creates settings for a symbology, with the engine's defaults.
+     * @param symbology One of the {@literal SYMBOLOGY_XXX} constants in {@link CodeScanner}.
+     * @return The settings.
+     */
+    public static SymbologySettings of(int symbology) {
+        if (symbology == 0 || (symbology & (symbology - 1)) != 0) {
+            throw new IllegalArgumentException("Settings must be for a single symbology: 0x"+Integer.toHexString(symbology));
+        }
+        return new SymbologySettings(symbology, null, -1, -1, new String[0], new boolean[0]);
+    }
+    
+    /**
+     * Returns a copy of these settings that only recognizes codes with a number of 
+     * symbols in the given range.  What counts as a symbol depends on the symbology, 
+     * but for most 1D codes it is the number of characters, including the check digit.
+     * @param min The minimum number of symbols.
+     * @param max The maximum number of symbols.
+     * @return The new settings.  These settings are not modified.
+     */
+    public SymbologySettings withActiveSymbolCountRange(int min, int max) {
+        if (min < 1 || max < min || max > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid symbol count range "+min+"-"+max);
+        }
+        short[] counts = new short[max - min + 1];
+        for (int i=0; i<counts.length; i++) {
+            counts[i] = (short)(min + i);
+        }
+        return new SymbologySettings(symbology, counts, checksums, colorInverted, extensions, extensionsEnabled);
+    }
+    
+    /**
+     * Returns a copy of these settings that only recognizes codes with the given 
+     * numbers of symbols.
+     * @param counts The allowed numbers of symbols, or none for the engine's default.
+     * @return The new settings.  These settings are not modified.
+     * @see #withActiveSymbolCountRange(int, int) 
+     */
+    public SymbologySettings withActiveSymbolCounts(int... counts) {
+        short[] out = null;
+        if (counts.length > 0) {
+            out = new short[counts.length];
+            for (int i=0; i<counts.length; i++) {
+                if (counts[i] < 1 || counts[i] > Short.MAX_VALUE) {
+                    throw new IllegalArgumentException("Invalid symbol count "+counts[i]);
+                }
+                out[i] = (short)counts[i];
+            }
+        }
+        return new SymbologySettings(symbology, out, checksums, colorInverted, extensions, extensionsEnabled);
+    }
+    
+    /**
+     * Returns a copy of these settings that requires the given optional checksums.  Codes
+     * that don't pass one of the checksums are rejected.
+     * @param checksums The {@literal CHECKSUM_XXX} constants OR'd together, 0 to require no 
+     * checksum, or -1 for the engine's default.
+     * @return The new settings.  These settings are not modified.
+     */
+    public SymbologySettings withChecksums(int checksums) {
+        if (checksums != -1 && (checksums & ~ALL_CHECKSUMS) != 0) {
+            throw new IllegalArgumentException("Unknown checksum 0x"+Integer.toHexString(checksums));
+        }
+        return new SymbologySettings(symbology, activeSymbolCounts, checksums, colorInverted, extensions, extensionsEnabled);
+    }
+    
+    /**
+     * Returns a copy of these settings that also recognizes light codes on a dark 
+     * background.  Unless this is set, the engine's default for the symbology is used, 
+     * which is off for most symbologies, since it doubles the work.
+     * @param enabled True to recognize color inverted codes, false to ignore them.
+     * @return The new settings.  These settings are not modified.
+     */
+    public SymbologySettings withColorInverted(boolean enabled) {
+        return new SymbologySettings(symbology, activeSymbolCounts, checksums, enabled ? 1 : 0, extensions, extensionsEnabled);
+    }
+    
+    /**
+     * Returns a copy of these settings with a symbology extension enabled or disabled,
+     * e.g. {@literal full_ascii} for Code 39, or {@literal remove_leading_zero} for EAN-13.  
+     * See the Scandit documentation for the extensions of each symbology.
+     * @param name The name of the extension.
+     * @param enabled True to enable the extension.
+     * @return The new settings.  These settings are not modified.
+     */
+    public SymbologySettings withExtension(String name, boolean enabled) {
+        int len = extensions.length;
+        for (int i=0; i<len; i++) {
+            if (extensions[i].equals(name)) {
+                if (extensionsEnabled[i] == enabled) {
+                    return this;
+                }
+                boolean[] e = new boolean[len];
+                System.arraycopy(extensionsEnabled, 0, e, 0, len);
+                e[i] = enabled;
+                return new SymbologySettings(symbology, activeSymbolCounts, checksums, colorInverted, extensions, e);
+            }
+        }
+        String[] n = new String[len + 1];
+        boolean[] e = new boolean[len + 1];
+        System.arraycopy(extensions, 0, n, 0, len);
+        System.arraycopy(extensionsEnabled, 0, e, 0, len);
+        n[len] = name;
+        e[len] = enabled;
+        return new SymbologySettings(symbology, activeSymbolCounts, checksums, colorInverted, n, e);
+    }
+    
+    /**
+     * Gets the symbology that these settings are for.
+     * @return One of the {@literal SYMBOLOGY_XXX} constants in {@link CodeScanner}.
+     */
+    public int getSymbology() {
+        return symbology;
+    }
+    
+    /**
+     * Gets the allowed numbers of symbols.
+     * @return A copy of the counts, or null if they aren't restricted.
+     */
+    public int[] getActiveSymbolCounts() {
+        if (activeSymbolCounts == null) {
+            return null;
+        }
+        int[] out = new int[activeSymbolCounts.length];
+        for (int i=0; i<out.length; i++) {
+            out[i] = activeSymbolCounts[i];
+        }
+        return out;
+    }
+    
+    /**
+     * Checks whether a number of symbols is allowed.
+     * @param count The number of symbols.
+     * @return True if codes with this many symbols are recognized.
+     */
+    public boolean isActiveSymbolCount(int count) {
+        if (activeSymbolCounts == null) {
+            return true;
+        }
+        for (short c : activeSymbolCounts) {
+            if (c == count) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Gets a copy of the allowed numbers of symbols, in the form the native SDKs take.
+     */
+    short[] copyActiveSymbolCounts() {
+        if (activeSymbolCounts == null) {
+            return null;
+        }
+        short[] out = new short[activeSymbolCounts.length];
+        System.arraycopy(activeSymbolCounts, 0, out, 0, out.length);
+        return out;
+    }
+    
+    /**
+     * Gets the required checksums.
+     * @return The {@literal CHECKSUM_XXX} constants OR'd together, or -1 for the engine's default.
+     */
+    public int getChecksums() {
+        return checksums;
+    }
+    
+    /**
+     * Checks whether color inverted codes are recognized.
+     * @return True if color inverted codes were enabled with {@link #withColorInverted(boolean) }.
+     */
+    public boolean isColorInvertedEnabled() {
+        return colorInverted == 1;
+    }
+    
+    /**
+     * Checks whether color inverted recognition was set with {@link #withColorInverted(boolean) }.
+     * @return False if the engine's default is used.
+     */
+    public boolean isColorInvertedSet() {
+        return colorInverted != -1;
+    }
+    
+    /**
+     * Gets the number of extensions that are explicitly enabled or disabled.
+     * @return The number of extensions.
+     */
+    public int getExtensionCount() {
+        return extensions.length;
+    }
+    
+    /**
+     * Gets the name of an extension.
+     * @param index The index, from 0 to {@link #getExtensionCount() }.
+     * @return The name of the extension.
+     */
+    public String getExtensionName(int index) {
+        return extensions[index];
+    }
+    
+    /**
+     * Checks whether an extension is enabled.
+     * @param index The index, from 0 to {@link #getExtensionCount() }.
+     * @return True if the extension is enabled, false if it is disabled.
+     */
+    public boolean isExtensionEnabled(int index) {
+        return extensionsEnabled[index];
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof SymbologySettings)) {
+            return false;
+        }
+        SymbologySettings s = (SymbologySettings)obj;
+        if (s.symbology != symbology || s.checksums != checksums || s.colorInverted != colorInverted
+                || s.extensions.length != extensions.length 
+                || (s.activeSymbolCounts == null ? activeSymbolCounts != null 
+                        : activeSymbolCounts == null || s.activeSymbolCounts.length != activeSymbolCounts.length)) {
+            return false;
+        }
+        for (int i=0; activeSymbolCounts != null && i<activeSymbolCounts.length; i++) {
+            if (s.activeSymbolCounts[i] != activeSymbolCounts[i]) {
+                return false;
+            }
+        }
+        for (int i=0; i<extensions.length; i++) {
+            if (!s.extensions[i].equals(extensions[i]) || s.extensionsEnabled[i] != extensionsEnabled[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = symbology;
+        h = 31 * h + checksums;
+        h = 31 * h + colorInverted;
+        for (int i=0; activeSymbolCounts != null && i<activeSymbolCounts.length; i++) {
+            h = 31 * h + activeSymbolCounts[i];
+        }
+        for (int i=0; i<extensions.length; i++) {
+            h = 31 * h + extensions[i].hashCode() + (extensionsEnabled[i] ? 1 : 0);
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SymbologySettings[0x").append(Integer.toHexString(symbology));
+        if (activeSymbolCounts != null) {
+            sb.append(", activeSymbolCounts=");
+            for (int i=0; i<activeSymbolCounts.length; i++) {
+                sb.append(i == 0 ? "" : ",").append(activeSymbolCounts[i]);
+            }
+        }
+        if (checksums != -1) {
+            sb.append(", checksums=0x").append(Integer.toHexString(checksums));
+        }
+        if (colorInverted != -1) {
+            sb.append(colorInverted == 1 ? ", +colorInverted" : ", -colorInverted");
+        }
+        for (int i=0; i<extensions.length; i++) {
+            sb.append(extensionsEnabled[i] ? ", +" : ", -").append(extensions[i]);
+        }
+        return sb.append("]").toString();
+    }
+}